@@ -0,0 +1,750 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES:
+ * NaiveBayesLearner.java, BoundedQueue.java, Queue.java, EvaluationReport.java, CorpusReader.java,
+ * DocumentHandler.java
+ *
+ * DESCRIPTION: Serves a trained NaiveBayesLearner over HTTP on the local machine (JDK
+ * com.sun.net.httpserver, bound to the loopback address).
+ *     POST /classify   {"text": "...", "threshold": 0.5}  or  {"documents": ["...", ...]}
+ *                      -> {"label": best, "labels": [all >= threshold], "scores": {cat: P(c|d)}}
+ *                         (a "results" array of those for "documents")
+ *     POST /reload     {"model": "path/to/model.bin"}  -> loads a saved model and swaps it in
+ *     GET  /health     -> model size and queue counters
+ * Requests are handed to a few batch workers through a BoundedQueue; a worker takes the first
+ * waiting document, collects whatever else arrives within a short window (up to a batch size)
+ * and classifies the whole batch against one model snapshot. The model is swapped atomically:
+ * requests already in a batch finish on the old model, later ones use the new one, and none
+ * are dropped. HTTP exchanges run on virtual threads when the JDK has them (21+), otherwise
+ * on a fixed thread pool.
+ **********************************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ClassifierServer {
+	private static final int MAX_BODY = 16 << 20;   //largest request body accepted, in bytes
+
+	private final AtomicReference<NaiveBayesLearner> model;
+	private final HttpServer server;
+	private final ExecutorService handlers;         //runs the HTTP exchanges
+	private final BoundedQueue<Request> pending;    //documents waiting for a batch worker
+	private final Thread[] workers;
+	private final int maxBatch;                     //most documents classified per batch
+	private final long batchWindowNanos;            //how long a batch waits for more documents
+	private volatile boolean running;
+
+	//serves model on localhost:port (0 picks a free port) with the given # of batch workers
+	public ClassifierServer(NaiveBayesLearner model, int port, int workers) throws IOException
+	{
+		this(model, port, workers, 32, 2000);
+	}
+
+	public ClassifierServer(NaiveBayesLearner model, int port, int workers, int maxBatch, long batchWindowMicros) throws IOException
+	{
+		if (workers < 1 || maxBatch < 1 || batchWindowMicros < 0)
+			throw new IllegalArgumentException("Invalid server settings");
+		this.model = new AtomicReference<NaiveBayesLearner>(model);
+		this.maxBatch = maxBatch;
+		this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(batchWindowMicros);
+		this.pending = new BoundedQueue<Request>(Math.max(1024, 4*maxBatch*workers), BoundedQueue.WaitStrategy.PARK);
+		this.workers = new Thread[workers];
+
+		handlers = handlerPool(4*workers);
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(handlers);
+		server.createContext("/classify", new HttpHandler() {
+			public void handle(HttpExchange ex) throws IOException { classify(ex); }
+		});
+		server.createContext("/reload", new HttpHandler() {
+			public void handle(HttpExchange ex) throws IOException { reload(ex); }
+		});
+		server.createContext("/health", new HttpHandler() {
+			public void handle(HttpExchange ex) throws IOException { health(ex); }
+		});
+	}
+
+	//virtual threads if this JDK has them (looked up reflectively so the class still runs on 17)
+	private static ExecutorService handlerPool(int threads)
+	{
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return Executors.newFixedThreadPool(threads);
+		}
+	}
+
+	public void start()
+	{
+		running = true;
+		for (int i = 0; i < workers.length; i++)
+		{
+			workers[i] = new Thread(new Runnable() {
+				public void run() { batchLoop(); }
+			}, "classifier-batch-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		server.start();
+	}
+
+	//stops accepting requests, waits up to delaySeconds for open exchanges, then stops the workers
+	public void stop(int delaySeconds) throws InterruptedException
+	{
+		server.stop(delaySeconds);
+		running = false;
+		for (Thread w: workers)
+			w.join();
+		handlers.shutdown();
+	}
+
+	public int port()
+	{
+		return server.getAddress().getPort();
+	}
+
+	//replaces the served model; returns the previous one
+	public NaiveBayesLearner swap(NaiveBayesLearner newModel)
+	{
+		if (newModel == null)
+			throw new IllegalArgumentException("Model must not be null");
+		return model.getAndSet(newModel);
+	}
+
+	public NaiveBayesLearner model()
+	{
+		return model.get();
+	}
+
+/*******************************************************************************************
+ * Batching
+ * ******************************************************************************************/
+	//one document waiting to be classified, and its result once a worker has classified it
+	private static final class Request {
+		final String text;
+		final double threshold;
+		final CountDownLatch done = new CountDownLatch(1);
+		String result;       //JSON result object
+		Throwable error;     //why it could not be classified (an Error included, so no request waits forever)
+
+		Request(String text, double threshold)
+		{
+			this.text = text;
+			this.threshold = threshold;
+		}
+
+		void classify(NaiveBayesLearner m)
+		{
+			try
+			{
+				result = resultJson(m, m.posteriors(text), threshold);
+			}
+			catch (Throwable e)
+			{
+				error = e;
+			}
+			finally
+			{
+				done.countDown();
+			}
+		}
+
+		//releases a request that was never classified
+		void fail(Throwable e)
+		{
+			if (done.getCount() > 0)
+			{
+				error = e;
+				done.countDown();
+			}
+		}
+
+		String await() throws IOException, InterruptedException
+		{
+			done.await();
+			if (error != null)
+				throw new IOException("Classification failed", error);
+			return result;
+		}
+	}
+
+	//takes the first waiting request, gathers whatever else arrives within the batch window,
+	//then classifies the batch against one snapshot of the model
+	private void batchLoop()
+	{
+		Queue<Request> batch = new Queue<Request>(maxBatch);
+		while (running || !pending.isEmpty())
+		{
+			try
+			{
+				Request first = pending.poll(50, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.enqueue(first);
+				long deadline = System.nanoTime() + batchWindowNanos;
+				while (batch.size() < maxBatch)
+				{
+					pending.drainTo(batch, maxBatch - batch.size());
+					long left = deadline - System.nanoTime();
+					if (batch.size() >= maxBatch || left <= 0)
+						break;
+					Request r = pending.poll(left, TimeUnit.NANOSECONDS);
+					if (r == null)
+						break;
+					batch.enqueue(r);
+				}
+
+				NaiveBayesLearner m = model.get();
+				for (Request r: batch)
+					r.classify(m);
+			}
+			catch (InterruptedException e)
+			{
+				for (Request r: batch)
+					r.fail(e);
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (RuntimeException e)
+			{
+				//a failure outside a request fails only the batch, and the worker carries on
+				for (Request r: batch)
+					r.fail(e);
+			}
+			finally
+			{
+				batch.clear();
+			}
+		}
+	}
+
+/*******************************************************************************************
+ * HTTP handlers
+ * ******************************************************************************************/
+	private void classify(HttpExchange ex) throws IOException
+	{
+		try
+		{
+			if (!"POST".equals(ex.getRequestMethod()))
+			{
+				respond(ex, 405, "{\"error\": \"POST a JSON document\"}");
+				return;
+			}
+			Object body = JsonParser.parse(readBody(ex));
+			if (!(body instanceof Map))
+				throw new IllegalArgumentException("Expected a JSON object");
+			Map<?, ?> req = (Map<?, ?>) body;
+			double threshold = (req.get("threshold") instanceof Double) ? (Double) req.get("threshold") : 0.5;
+
+			if (req.get("text") instanceof String)
+			{
+				Request r = new Request((String) req.get("text"), threshold);
+				pending.put(r);
+				respond(ex, 200, r.await());
+			}
+			else if (req.get("documents") instanceof List)
+			{
+				List<Request> rs = new ArrayList<Request>();
+				for (Object o: (List<?>) req.get("documents"))
+				{
+					if (!(o instanceof String))
+						throw new IllegalArgumentException("Documents must be strings");
+					rs.add(new Request((String) o, threshold));
+				}
+				for (Request r: rs)
+					pending.put(r);
+				StringBuilder sb = new StringBuilder("{\"results\": [");
+				for (int i = 0; i < rs.size(); i++)
+					sb.append(i == 0 ? "" : ", ").append(rs.get(i).await());
+				respond(ex, 200, sb.append("]}").toString());
+			}
+			else
+				throw new IllegalArgumentException("Expected \"text\" or \"documents\"");
+		}
+		catch (IllegalArgumentException e)
+		{
+			respond(ex, 400, "{\"error\": " + EvaluationReport.json(String.valueOf(e.getMessage())) + "}");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			respond(ex, 503, "{\"error\": \"interrupted\"}");
+		}
+		catch (IOException e)
+		{
+			respond(ex, 500, "{\"error\": " + EvaluationReport.json(String.valueOf(e.getMessage())) + "}");
+		}
+	}
+
+	private void reload(HttpExchange ex) throws IOException
+	{
+		try
+		{
+			if (!"POST".equals(ex.getRequestMethod()))
+			{
+				respond(ex, 405, "{\"error\": \"POST {\\\"model\\\": path}\"}");
+				return;
+			}
+			Object body = JsonParser.parse(readBody(ex));
+			if (!(body instanceof Map) || !(((Map<?, ?>) body).get("model") instanceof String))
+				throw new IllegalArgumentException("Expected {\"model\": path}");
+			NaiveBayesLearner m = NaiveBayesLearner.load((String) ((Map<?, ?>) body).get("model"));
+			swap(m);
+			respond(ex, 200, "{\"categories\": " + m.numCategories() + "}");
+		}
+		catch (IllegalArgumentException e)
+		{
+			respond(ex, 400, "{\"error\": " + EvaluationReport.json(String.valueOf(e.getMessage())) + "}");
+		}
+		catch (IOException e)
+		{
+			respond(ex, 500, "{\"error\": " + EvaluationReport.json(String.valueOf(e.getMessage())) + "}");
+		}
+	}
+
+	private void health(HttpExchange ex) throws IOException
+	{
+		readBody(ex);
+		respond(ex, 200, "{\"status\": \"ok\", \"categories\": " + model.get().numCategories()
+				+ ", \"queued\": " + pending.size() + ", \"classified\": " + pending.dequeuedCount() + "}");
+	}
+
+	//{"label": best, "labels": [...], "scores": {...}} for one document's posteriors
+	static String resultJson(NaiveBayesLearner m, double[] post, double threshold)
+	{
+		int best = 0;
+		for (int c = 1; c < post.length; c++)
+		{
+			if (post[c] > post[best])
+				best = c;
+		}
+		StringBuilder labels = new StringBuilder();
+		StringBuilder scores = new StringBuilder();
+		for (int c = 0; c < post.length; c++)
+		{
+			String cat = EvaluationReport.json(m.category(c));
+			if (post[c] >= threshold)
+				labels.append(labels.length() == 0 ? "" : ", ").append(cat);
+			scores.append(c == 0 ? "" : ", ").append(cat).append(": ").append(post[c]);
+		}
+		return "{\"label\": " + EvaluationReport.json(m.category(best)) + ", \"labels\": [" + labels
+				+ "], \"scores\": {" + scores + "}}";
+	}
+
+	private static String readBody(HttpExchange ex) throws IOException
+	{
+		InputStream in = ex.getRequestBody();
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		byte[] b = new byte[8192];
+		int n;
+		while ((n = in.read(b)) > 0)
+		{
+			buf.write(b, 0, n);
+			if (buf.size() > MAX_BODY)
+				throw new IllegalArgumentException("Request body too large");
+		}
+		in.close();
+		return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static void respond(HttpExchange ex, int status, String json) throws IOException
+	{
+		byte[] b = json.getBytes(StandardCharsets.UTF_8);
+		ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		ex.sendResponseHeaders(status, b.length);
+		OutputStream out = ex.getResponseBody();
+		out.write(b);
+		out.close();
+	}
+
+/*******************************************************************************************
+ * Minimal JSON reader for request bodies: objects, arrays, strings, numbers (as Double),
+ * true/false and null. Objects and arrays nest at most MAX_DEPTH deep, so a hostile body
+ * (e.g. 16 MB of '[') is rejected rather than overflowing the stack of the recursive reader.
+ * ******************************************************************************************/
+	static final class JsonParser {
+		private static final int MAX_DEPTH = 64;
+		private final String s;
+		private int i;
+		private int depth;   //objects and arrays open at i
+
+		private JsonParser(String s)
+		{
+			this.s = s;
+		}
+
+		//throws IllegalArgumentException if s is not a single JSON value
+		static Object parse(String s)
+		{
+			JsonParser p = new JsonParser(s);
+			Object v = p.value();
+			p.space();
+			if (p.i != s.length())
+				throw p.error("Trailing characters");
+			return v;
+		}
+
+		private Object value()
+		{
+			space();
+			if (i >= s.length())
+				throw error("Unexpected end of JSON");
+			char c = s.charAt(i);
+			switch (c)
+			{
+				case '{': return object();
+				case '[': return array();
+				case '"': return string();
+				case 't': return literal("true", Boolean.TRUE);
+				case 'f': return literal("false", Boolean.FALSE);
+				case 'n': return literal("null", null);
+				default:  return number();
+			}
+		}
+
+		private Map<String, Object> object()
+		{
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			open();
+			space();
+			if (peek() == '}') { i++; depth--; return map; }
+			while (true)
+			{
+				space();
+				if (peek() != '"')
+					throw error("Expected a key");
+				String key = string();
+				space();
+				expect(':');
+				map.put(key, value());
+				space();
+				if (peek() == ',') { i++; continue; }
+				expect('}');
+				depth--;
+				return map;
+			}
+		}
+
+		private List<Object> array()
+		{
+			List<Object> list = new ArrayList<Object>();
+			open();
+			space();
+			if (peek() == ']') { i++; depth--; return list; }
+			while (true)
+			{
+				list.add(value());
+				space();
+				if (peek() == ',') { i++; continue; }
+				expect(']');
+				depth--;
+				return list;
+			}
+		}
+
+		//steps over the '{' or '[' at i
+		private void open()
+		{
+			if (++depth > MAX_DEPTH)
+				throw error("JSON nested more than " + MAX_DEPTH + " deep");
+			i++;
+		}
+
+		private String string()
+		{
+			StringBuilder sb = new StringBuilder();
+			i++;
+			while (true)
+			{
+				if (i >= s.length())
+					throw error("Unterminated string");
+				char c = s.charAt(i++);
+				if (c == '"')
+					return sb.toString();
+				if (c != '\\')
+				{
+					sb.append(c);
+					continue;
+				}
+				if (i >= s.length())
+					throw error("Unterminated string");
+				char e = s.charAt(i++);
+				switch (e)
+				{
+					case '"': case '\\': case '/': sb.append(e); break;
+					case 'b': sb.append('\b'); break;
+					case 'f': sb.append('\f'); break;
+					case 'n': sb.append('\n'); break;
+					case 'r': sb.append('\r'); break;
+					case 't': sb.append('\t'); break;
+					case 'u':
+						if (i + 4 > s.length())
+							throw error("Bad unicode escape");
+						try
+						{
+							sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+						}
+						catch (NumberFormatException ne)
+						{
+							throw error("Bad unicode escape");
+						}
+						i += 4;
+						break;
+					default: throw error("Bad escape");
+				}
+			}
+		}
+
+		private Double number()
+		{
+			int start = i;
+			while (i < s.length() && "+-0123456789.eE".indexOf(s.charAt(i)) >= 0)
+				i++;
+			try
+			{
+				return Double.valueOf(s.substring(start, i));
+			}
+			catch (NumberFormatException e)
+			{
+				throw error("Bad value");
+			}
+		}
+
+		private Object literal(String word, Object v)
+		{
+			if (!s.startsWith(word, i))
+				throw error("Bad value");
+			i += word.length();
+			return v;
+		}
+
+		private void space()
+		{
+			while (i < s.length() && Character.isWhitespace(s.charAt(i)))
+				i++;
+		}
+
+		private char peek()
+		{
+			return (i < s.length()) ? s.charAt(i) : 0;
+		}
+
+		private void expect(char c)
+		{
+			if (peek() != c)
+				throw error("Expected '" + c + "'");
+			i++;
+		}
+
+		private IllegalArgumentException error(String msg)
+		{
+			return new IllegalArgumentException(msg + " at position " + i);
+		}
+	}
+
+	//usage: java ClassifierServer model.bin [port] [workers]
+	//       java ClassifierServer -check trainFile
+	//serves a model saved with NaiveBayesLearner.save on localhost until the process is killed,
+	//or checks the service offline against localhost (see check)
+	public static void main(String[] args) throws Exception
+	{
+		if (args[0].equals("-check"))
+		{
+			check(args[1]);
+			return;
+		}
+		NaiveBayesLearner m = NaiveBayesLearner.load(args[0]);
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : 8080;
+		int workers = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		ClassifierServer server = new ClassifierServer(m, port, workers);
+		server.start();
+		System.out.println("Serving " + m.numCategories() + " categories on http://localhost:" + server.port() + "/classify");
+	}
+
+	//trains two models on a Reuters file and serves the first on a free localhost port, then checks
+	//that single and batched documents get the same results as classifying them directly, that
+	//while client threads keep posting, /reload swaps between the two models without any request
+	//failing (each result must come from one model or the other), and that bad bodies get a 400
+	private static void check(String trainFile) throws Exception
+	{
+		final List<String> texts = new ArrayList<String>();
+		CorpusReader.readReuters(trainFile, new DocumentHandler() {
+			public void document(String[] cats, String text) {
+				if (texts.size() < 40)
+					texts.add(text);
+			}
+		});
+		java.io.File fileA = java.io.File.createTempFile("server-check-a", ".bin");
+		java.io.File fileB = java.io.File.createTempFile("server-check-b", ".bin");
+		new NaiveBayesLearner(trainFile, 'R', 'C', 20).save(fileA.getPath());
+		new NaiveBayesLearner(trainFile, 'R', 'M', 5).save(fileB.getPath());
+		NaiveBayesLearner a = NaiveBayesLearner.load(fileA.getPath());
+		NaiveBayesLearner b = NaiveBayesLearner.load(fileB.getPath());
+		final String[] expectA = new String[texts.size()];
+		final String[] expectB = new String[texts.size()];
+		int differ = 0;
+		for (int i = 0; i < texts.size(); i++)
+		{
+			expectA[i] = resultJson(a, a.posteriors(texts.get(i)), 0.5);
+			expectB[i] = resultJson(b, b.posteriors(texts.get(i)), 0.5);
+			if (!expectA[i].equals(expectB[i]))
+				differ++;
+		}
+		System.out.println("Documents: " + texts.size() + ", results differing between the two models: " + differ);
+
+		final ClassifierServer server = new ClassifierServer(a, 0, 2);
+		server.start();
+		final java.util.concurrent.atomic.AtomicInteger failures = new java.util.concurrent.atomic.AtomicInteger();
+		final java.util.concurrent.atomic.AtomicInteger requests = new java.util.concurrent.atomic.AtomicInteger();
+		try
+		{
+			//one model: exact results
+			for (int i = 0; i < texts.size(); i++)
+			{
+				String[] r = post(server.port(), "/classify", "{\"text\": " + EvaluationReport.json(texts.get(i)) + "}");
+				if (!r[0].equals("200") || !r[1].equals(expectA[i]))
+					failures.incrementAndGet();
+			}
+			StringBuilder batch = new StringBuilder("{\"documents\": [");
+			StringBuilder expected = new StringBuilder("{\"results\": [");
+			for (int i = 0; i < texts.size(); i++)
+			{
+				batch.append(i == 0 ? "" : ", ").append(EvaluationReport.json(texts.get(i)));
+				expected.append(i == 0 ? "" : ", ").append(expectA[i]);
+			}
+			String[] r = post(server.port(), "/classify", batch.append("]}").toString());
+			if (!r[0].equals("200") || !r[1].equals(expected.append("]}").toString()))
+				failures.incrementAndGet();
+			System.out.println("Single and batched documents: " + (texts.size() + 1) + " requests, failures: " + failures.get());
+
+			//reloads while clients post single documents and batches of 5
+			Thread[] clients = new Thread[8];
+			for (int t = 0; t < clients.length; t++)
+			{
+				final int seed = t;
+				clients[t] = new Thread(new Runnable() {
+					public void run() {
+						java.util.Random rnd = new java.util.Random(seed);
+						for (int k = 0; k < 60; k++)
+						{
+							try
+							{
+								int n = (k % 2 == 0) ? 1 : 5;
+								int[] docs = new int[n];
+								StringBuilder body = new StringBuilder("{\"documents\": [");
+								for (int j = 0; j < n; j++)
+								{
+									docs[j] = rnd.nextInt(texts.size());
+									body.append(j == 0 ? "" : ", ").append(EvaluationReport.json(texts.get(docs[j])));
+								}
+								String[] r = post(server.port(), "/classify", body.append("]}").toString());
+								requests.incrementAndGet();
+								if (!r[0].equals("200"))
+								{
+									failures.incrementAndGet();
+									continue;
+								}
+								for (int j = 0; j < n; j++)
+								{
+									if (!r[1].contains(expectA[docs[j]]) && !r[1].contains(expectB[docs[j]]))
+										failures.incrementAndGet();
+								}
+							}
+							catch (IOException e)
+							{
+								failures.incrementAndGet();
+							}
+						}
+					}
+				});
+				clients[t].start();
+			}
+			int reloads = 0;
+			while (anyAlive(clients))
+			{
+				String path = (reloads % 2 == 0) ? fileB.getPath() : fileA.getPath();
+				String[] rr = post(server.port(), "/reload", "{\"model\": " + EvaluationReport.json(path) + "}");
+				if (!rr[0].equals("200"))
+					failures.incrementAndGet();
+				reloads++;
+			}
+			for (Thread c: clients)
+				c.join();
+			System.out.println("During " + reloads + " reloads: " + requests.get() + " requests, failures: " + failures.get());
+
+			//bad bodies are answered with a 400
+			StringBuilder deep = new StringBuilder();
+			for (int i = 0; i < 100000; i++)
+				deep.append('[');
+			String[] bad = { deep.toString(), "{\"text\": ", "[1, 2]", "{\"documents\": [1]}" };
+			for (String body: bad)
+			{
+				if (!post(server.port(), "/classify", body)[0].equals("400"))
+					failures.incrementAndGet();
+			}
+			System.out.println("Bad bodies: " + bad.length + ", total failures: " + failures.get());
+		}
+		finally
+		{
+			server.stop(0);
+			fileA.delete();
+			fileB.delete();
+		}
+		if (failures.get() > 0)
+			throw new IllegalStateException(failures.get() + " requests failed");
+	}
+
+	private static boolean anyAlive(Thread[] threads)
+	{
+		for (Thread t: threads)
+		{
+			if (t.isAlive())
+				return true;
+		}
+		return false;
+	}
+
+	//POSTs body to localhost:port/path; returns the status code and the response body
+	private static String[] post(int port, String path, String body) throws IOException
+	{
+		java.net.HttpURLConnection c = (java.net.HttpURLConnection) new java.net.URL("http://127.0.0.1:" + port + path).openConnection();
+		c.setRequestMethod("POST");
+		c.setDoOutput(true);
+		OutputStream out = c.getOutputStream();
+		out.write(body.getBytes(StandardCharsets.UTF_8));
+		out.close();
+		int status = c.getResponseCode();
+		InputStream in = (status < 400) ? c.getInputStream() : c.getErrorStream();
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		byte[] b = new byte[8192];
+		int n;
+		while (in != null && (n = in.read(b)) > 0)
+			buf.write(b, 0, n);
+		if (in != null)
+			in.close();
+		return new String[] { String.valueOf(status), new String(buf.toByteArray(), StandardCharsets.UTF_8) };
+	}
+}
@@ -0,0 +1,216 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES:
+ * DocumentBuilder.java, Document.java, DocumentSink.java, DocumentHandler.java, CorpusReader.java,
+ * LearnerOptions.java, TextPipeline.java
+ *
+ * DESCRIPTION: Cache of cleaned and stemmed corpora, so cleaning and stemming run once per
+ * input file instead of on every training run, evaluation or sweep. A corpus is stored in a
+ * compact binary file in the cache directory, named by a SHA-256 of the input file's content
+ * and of the cleaning configuration (data type, text pipeline, n-gram settings and
+ * CLEANING_VERSION), so a changed file or configuration never reads a stale cache. Each document is stored as its
+ * labels plus (term id, count) pairs; a term's string is written once, just before the first
+ * document that uses it, so the file is written and read in a single streaming pass. Cache
+ * files are written under a temporary name and renamed when complete.
+ **********************************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CorpusCache {
+	//increase whenever cleaning or stemming changes, so existing caches are no longer used
+	public static final int CLEANING_VERSION = 2;
+
+	private static final int MAGIC = 0x4E424331;   //"NBC1"
+
+	private final File dir;
+
+	public CorpusCache(File dir)
+	{
+		this.dir = dir;
+	}
+
+	//all tokenized documents of a corpus, from the cache if present (otherwise cleaned, stemmed and cached)
+	public List<Document> readCorpus(String fileName, char dataType, LearnerOptions options) throws IOException
+	{
+		final List<Document> docs = new ArrayList<Document>();
+		stream(fileName, dataType, options, new DocumentSink() {
+			public void document(Document d) { docs.add(d); }
+		});
+		return docs;
+	}
+
+	//passes every tokenized document of a corpus to sink, streaming from the cache if present;
+	//otherwise the corpus is cleaned and stemmed once, cached and passed on at the same time
+	public void stream(String fileName, char dataType, LearnerOptions options, final DocumentSink sink) throws IOException
+	{
+		String config = config(dataType, options);
+		File cache = cacheFile(fileName, config);
+		if (cache.exists())
+		{
+			read(cache, config, sink);
+			return;
+		}
+
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Cannot create cache directory " + dir);
+		File tmp = File.createTempFile(cache.getName(), ".tmp", dir);
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeUTF(config);
+			final DocumentBuilder builder = new DocumentBuilder(options);
+			final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+			CorpusReader.read(fileName, dataType, new DocumentHandler() {
+				public void document(String[] cats, String text) throws IOException {
+					Document d = builder.build(cats, text);
+					write(out, d, ids);
+					sink.document(d);
+				}
+			});
+			out.writeBoolean(false);
+			out.close();
+			Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally
+		{
+			out.close();
+			tmp.delete();
+		}
+	}
+
+	//the cache file for a corpus and cleaning configuration
+	public File cacheFile(String fileName, char dataType, LearnerOptions options) throws IOException
+	{
+		return cacheFile(fileName, config(dataType, options));
+	}
+
+	private File cacheFile(String fileName, String config) throws IOException
+	{
+		MessageDigest sha = sha256();
+		InputStream in = new FileInputStream(fileName);
+		try
+		{
+			byte[] buf = new byte[1 << 16];
+			int n;
+			while ((n = in.read(buf)) > 0)
+				sha.update(buf, 0, n);
+		}
+		finally
+		{
+			in.close();
+		}
+		sha.update(config.getBytes("UTF-8"));
+		StringBuilder hex = new StringBuilder();
+		for (byte b: sha.digest())
+			hex.append(String.format("%02x", b & 0xff));
+		return new File(dir, hex + ".corpus");
+	}
+
+	//everything that changes how a raw corpus becomes tokenized documents
+	private static String config(char dataType, LearnerOptions options)
+	{
+		return "v" + CLEANING_VERSION + " type=" + dataType + " pipeline=" + options.getPipeline().signature()
+				+ " ngrams=" + options.getNgramOrder()
+				+ " minNgramCount=" + options.getMinNgramCount()
+				+ " sketch=" + options.getSketchWidth() + "x" + options.getSketchDepth();
+	}
+
+	private static MessageDigest sha256()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("SHA-256 unavailable", e);
+		}
+	}
+
+/*******************************************************************************************
+ * File format: MAGIC, config (UTF), then per document
+ *     true, # of new terms, their strings (UTF; they get the next term ids in order),
+ *     # of labels, the labels (UTF), # of terms, (term id, count) pairs
+ * and false after the last document.
+ * ******************************************************************************************/
+	private static void write(DataOutputStream out, Document d, HashMap<String, Integer> ids) throws IOException
+	{
+		List<String> fresh = new ArrayList<String>();
+		for (String term: d.termCounts().keySet())
+		{
+			if (!ids.containsKey(term))
+			{
+				ids.put(term, ids.size());
+				fresh.add(term);
+			}
+		}
+		out.writeBoolean(true);
+		out.writeInt(fresh.size());
+		for (String term: fresh)
+			out.writeUTF(term);
+		out.writeInt(d.labels().length);
+		for (String l: d.labels())
+			out.writeUTF(l);
+		out.writeInt(d.termCounts().size());
+		for (Map.Entry<String, Integer> e: d.termCounts().entrySet())
+		{
+			out.writeInt(ids.get(e.getKey()));
+			out.writeInt(e.getValue());
+		}
+	}
+
+	private static void read(File cache, String config, DocumentSink sink) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache), 1 << 16));
+		try
+		{
+			if (in.readInt() != MAGIC || !in.readUTF().equals(config))
+				throw new IOException("Not a cache of this corpus: " + cache);
+			List<String> terms = new ArrayList<String>();
+			while (in.readBoolean())
+			{
+				int fresh = in.readInt();
+				for (int i = 0; i < fresh; i++)
+					terms.add(in.readUTF());
+				String[] labels = new String[in.readInt()];
+				for (int i = 0; i < labels.length; i++)
+					labels[i] = in.readUTF();
+				int n = in.readInt();
+				HashMap<String, Integer> counts = new HashMap<String, Integer>(2*n);
+				for (int i = 0; i < n; i++)
+				{
+					String term = terms.get(in.readInt());
+					counts.put(term, in.readInt());
+				}
+				sink.document(new Document(labels, counts));
+			}
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw new IOException("Corrupt corpus cache " + cache, e);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: DocumentHandler.java, FeatureHasher.java
+ * 
+ * DESCRIPTION: Reads labelled training/testing documents, either from Reuters RCV1 style XML
+ * (only documents with TOPICS="YES", a topic list and a body) or from an EXCEL ticket 
+ * spreadsheet (column 1 - category, columns 2-4 - text), and hands each one to a 
+ * DocumentHandler. Shared by every learner so the input formats are parsed in one place.
+ * A corpus can also be read as one of n shards: every document belongs to exactly one shard,
+ * chosen by a hash of its content, so the same file splits the same way in every process.
+ **********************************************************************************************/
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+public class CorpusReader {
+	
+	//Regular expression patterns for parsing through RCV1
+	static final Pattern topicPattern = Pattern.compile("<TOPICS><D>(.+?)</D></TOPICS>");
+	static final Pattern topicYAY = Pattern.compile("<REUTERS TOPICS=\"YES\"");
+	static final Pattern bodyPattern = Pattern.compile("<BODY>(.+?)</BODY>");
+	static final Pattern docPattern = Pattern.compile("<REUTERS(.+?)</REUTERS>");
+	
+	//dataType - 'R' for reuters data, 'T' for excel ticket data
+	public static void read(String fileName, char dataType, DocumentHandler handler) throws IOException
+	{
+		if (dataType == 'R')
+			readReuters(fileName, handler);
+		else if (dataType == 'T')
+			readTickets(fileName, handler);
+		else
+			throw new IllegalArgumentException("Invalid DataType Selection");
+	}
+	
+	//reads only the documents of the given shard (0 to numShards-1) of a corpus
+	public static void readShard(String fileName, char dataType, final int shard, final int numShards, 
+			final DocumentHandler handler) throws IOException
+	{
+		if (numShards < 1 || shard < 0 || shard >= numShards)
+			throw new IllegalArgumentException("Invalid shard " + shard + " of " + numShards);
+		read(fileName, dataType, new DocumentHandler() {
+			public void document(String[] cats, String text) throws IOException {
+				if (shardOf(cats, text, numShards) == shard)
+					handler.document(cats, text);
+			}
+		});
+	}
+	
+	//the shard of a document: a MurmurHash3 of its labels and text, so it depends only on the 
+	//document's content (not on its position, the JVM or the machine)
+	public static int shardOf(String[] cats, String text, int numShards)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (String c: cats)
+			sb.append(c).append('\u0000');
+		sb.append(text);
+		char[] chars = new char[sb.length()];
+		sb.getChars(0, chars.length, chars, 0);
+		return Math.floorMod(FeatureHasher.murmur3(chars, 0, chars.length, 0x5eed), numShards);
+	}
+	
+	//parse ticket data: category in column 1, summary/notes/resolution text in columns 2-4
+	public static void readTickets(String fileName, DocumentHandler handler) throws IOException
+	{
+		FileInputStream file = new FileInputStream(new File(fileName));
+		
+		//Get the workbook instance for XLS file 
+		XSSFWorkbook tickets = new XSSFWorkbook(file);
+			 
+		//Get first sheet from the workbook
+		XSSFSheet sheet = tickets.getSheetAt(0);
+		int rowNum = sheet.getLastRowNum();
+		
+		for (int i=1; i<rowNum+1; i++)
+		{
+			 XSSFRow row = sheet.getRow(i);
+			 
+			 String cat = row.getCell(1).getStringCellValue();
+			 String sum = " ";
+			 String notes = " ";
+			 String res = " ";
+			 
+			 if (row.getCell(2) != null)
+				 sum = row.getCell(2).getStringCellValue();
+			 if (row.getCell(3) != null)
+				 notes = row.getCell(3).getStringCellValue();
+			 if (row.getCell(4) != null)
+			 	 res = row.getCell(4).getStringCellValue();
+			 
+			 String fullDoc = sum + " " + notes + " " + res;
+			 handler.document(new String[] {cat}, fullDoc);
+		}
+		file.close();
+	}
+	
+	//parse Reuters data, taking in document categories and text bodies
+	public static void readReuters(String fileName, DocumentHandler handler) throws IOException
+	{
+		//Break input feed into documents using REUTERS divider
+		List<String> docs = separateDocuments(fileName);
+		
+		//Parse the topics and body from each document
+		for (String doc: docs)
+		{
+			String [] cats;
+			String body;
+			
+			//check if topic is yes
+			Matcher topicMatcher = topicYAY.matcher(doc);
+			if (topicMatcher.find())
+			{
+				//get what is between topic tags, and split topic string to get all topics
+				Matcher catMatcher = topicPattern.matcher(doc);
+				if (catMatcher.find())
+					cats = catMatcher.group(1).split("</D><D>");
+				else
+					continue;
+				
+				//get what is between the body tags
+				Matcher bodyMatcher = bodyPattern.matcher(doc);
+				if (bodyMatcher.find())
+					body = bodyMatcher.group(1);
+				else
+					continue;
+				
+				handler.document(cats, body);
+			}
+		}
+	}
+	
+	//breaks Reuters style XML-formated input data into documents
+	public static List<String> separateDocuments(String fileName) {
+		List<String> docs = new ArrayList<String>();
+		String line = " ";
+		try
+		{
+			//first convert the feed to string
+			BufferedReader br = new BufferedReader(new FileReader(fileName));
+			StringBuilder sb = new StringBuilder();
+			while ((line = br.readLine()) != null)
+			{
+				sb.append(line);
+			}
+			br.close();
+			String text = sb.toString(); 
+			
+			//separate into documents
+			Matcher docMatcher = docPattern.matcher(text);
+			while(docMatcher.find())
+			{
+				docs.add(docMatcher.group());
+			}
+		} 
+		catch (IOException ioe)
+		{
+			ioe.printStackTrace();
+		}
+		
+		return docs;
+	}
+}
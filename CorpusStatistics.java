@@ -0,0 +1,293 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: Document.java
+ * 
+ * DESCRIPTION: Sufficient statistics of a tokenized training corpus for Naive Bayes: the 
+ * sorted categories and their document counts, the sorted vocabulary with overall term 
+ * frequencies, and for every (term, category) pair both the # of documents containing the 
+ * term and the total # of occurrences of the term. Everything a NaiveBayesLearner needs for
+ * feature selection and probability estimation is derived from these tables, so they are 
+ * counted once and can then be shared (read-only) by any number of learners with different 
+ * settings. A document with several labels is counted under each of its labels.
+ * Statistics can be written to and read from a file, and statistics counted separately over
+ * disjoint parts of a corpus merge into exactly the statistics of the whole corpus, so a 
+ * corpus can be counted in shards by several processes (see ModelMerger).
+ **********************************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+public class CorpusStatistics {
+	private final int numDocs;
+	private final String[] categories;  //all categories, in sorted order
+	private final int[] catCount;       //catCount[c] = # of documents in category c
+	private final String[] terms;       //all terms, in sorted order
+	private final int[] termTotals;     //termTotals[t] = # of occurrences of term t in the corpus
+	private final int[][] docFreq;      //docFreq[t][c] = # of documents of category c containing term t
+	private final int[][] termFreq;     //termFreq[t][c] = # of occurrences of term t in category c
+	
+	//counts all documents in one pass (after collecting the category and term names)
+	public CorpusStatistics(List<Document> docs)
+	{
+		numDocs = docs.size();
+		
+		//collect and sort the category and term names
+		HashSet<String> catSet = new HashSet<String>();
+		HashSet<String> termSet = new HashSet<String>();
+		for (Document d: docs)
+		{
+			for (String l: d.labels())
+				catSet.add(l);
+			termSet.addAll(d.termCounts().keySet());
+		}
+		categories = catSet.toArray(new String[catSet.size()]);
+		terms = termSet.toArray(new String[termSet.size()]);
+		Arrays.sort(categories);
+		Arrays.sort(terms);
+		HashMap<String, Integer> termIndex = new HashMap<String, Integer>(2*terms.length);
+		for (int t = 0; t < terms.length; t++)
+			termIndex.put(terms[t], t);
+		
+		//count
+		catCount = new int[categories.length];
+		termTotals = new int[terms.length];
+		docFreq = new int[terms.length][categories.length];
+		termFreq = new int[terms.length][categories.length];
+		int[] cats = new int[categories.length];
+		for (Document d: docs)
+		{
+			//a label listed twice on one document still counts once
+			int n = 0;
+			for (String l: d.labels())
+			{
+				int c = categoryIndex(l);
+				boolean dup = false;
+				for (int i = 0; i < n; i++)
+					dup |= (cats[i] == c);
+				if (!dup)
+				{
+					cats[n++] = c;
+					catCount[c]++;
+				}
+			}
+			
+			for (Map.Entry<String, Integer> e: d.termCounts().entrySet())
+			{
+				int t = termIndex.get(e.getKey());
+				int count = e.getValue();
+				termTotals[t] += count;
+				for (int i = 0; i < n; i++)
+				{
+					docFreq[t][cats[i]]++;
+					termFreq[t][cats[i]] += count;
+				}
+			}
+		}
+	}
+	
+	//statistics which have already been counted (e.g. merged from spilled runs); categories and
+	//terms must be sorted, and the arrays are taken over without copying
+	CorpusStatistics(int numDocs, String[] categories, int[] catCount, String[] terms, int[] termTotals,
+			int[][] docFreq, int[][] termFreq)
+	{
+		this.numDocs = numDocs;
+		this.categories = categories;
+		this.catCount = catCount;
+		this.terms = terms;
+		this.termTotals = termTotals;
+		this.docFreq = docFreq;
+		this.termFreq = termFreq;
+	}
+	
+	public int numDocs()   { return numDocs; }
+	public int numCats()   { return categories.length; }
+	public int numTerms()  { return terms.length; }
+	
+	public String category(int c)  { return categories[c]; }
+	public String term(int t)      { return terms[t]; }
+	
+	//index of the category in sorted order, or a negative number if it does not exist
+	public int categoryIndex(String cat)
+	{
+		return Arrays.binarySearch(categories, cat);
+	}
+	
+	//index of the term in sorted order, or a negative number if it does not exist
+	public int termIndex(String term)
+	{
+		return Arrays.binarySearch(terms, term);
+	}
+	
+	public int catCount(int c)            { return catCount[c]; }
+	public int termTotal(int t)           { return termTotals[t]; }
+	public int docFreq(int t, int c)      { return docFreq[t][c]; }
+	public int termFreq(int t, int c)     { return termFreq[t][c]; }
+	
+	//statistics of the union of the (disjoint) corpora the given statistics were counted from
+	public static CorpusStatistics merge(List<CorpusStatistics> parts)
+	{
+		//union of the category and term names, sorted
+		HashSet<String> catSet = new HashSet<String>();
+		HashSet<String> termSet = new HashSet<String>();
+		int docs = 0;
+		for (CorpusStatistics p: parts)
+		{
+			docs += p.numDocs;
+			catSet.addAll(Arrays.asList(p.categories));
+			termSet.addAll(Arrays.asList(p.terms));
+		}
+		String[] cats = catSet.toArray(new String[catSet.size()]);
+		String[] words = termSet.toArray(new String[termSet.size()]);
+		Arrays.sort(cats);
+		Arrays.sort(words);
+		
+		//sum the counts of every part at the merged indices
+		int[] catCount = new int[cats.length];
+		int[] termTotals = new int[words.length];
+		int[][] docFreq = new int[words.length][cats.length];
+		int[][] termFreq = new int[words.length][cats.length];
+		for (CorpusStatistics p: parts)
+		{
+			int[] c2 = new int[p.categories.length];
+			for (int c = 0; c < c2.length; c++)
+			{
+				c2[c] = Arrays.binarySearch(cats, p.categories[c]);
+				catCount[c2[c]] += p.catCount[c];
+			}
+			for (int t = 0; t < p.terms.length; t++)
+			{
+				int t2 = Arrays.binarySearch(words, p.terms[t]);
+				termTotals[t2] += p.termTotals[t];
+				for (int c = 0; c < c2.length; c++)
+				{
+					docFreq[t2][c2[c]] += p.docFreq[t][c];
+					termFreq[t2][c2[c]] += p.termFreq[t][c];
+				}
+			}
+		}
+		return new CorpusStatistics(docs, cats, catCount, words, termTotals, docFreq, termFreq);
+	}
+	
+/*******************************************************************************************
+ * Persistence (counts of each term are stored sparsely, for the categories it occurs in)
+ * ******************************************************************************************/
+	private static final int MAGIC = 0x4E425331;   //"NBS1"
+	private static final int VERSION = 1;
+	
+	public void save(String fileName) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+		try
+		{
+			writeTo(out);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	public static CorpusStatistics load(String fileName) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		try
+		{
+			return readFrom(in);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(numDocs);
+		out.writeInt(categories.length);
+		for (int c = 0; c < categories.length; c++)
+		{
+			out.writeUTF(categories[c]);
+			out.writeInt(catCount[c]);
+		}
+		out.writeInt(terms.length);
+		for (int t = 0; t < terms.length; t++)
+		{
+			out.writeUTF(terms[t]);
+			out.writeInt(termTotals[t]);
+			int nz = 0;
+			for (int c = 0; c < categories.length; c++)
+				nz += (docFreq[t][c] != 0) ? 1 : 0;
+			out.writeInt(nz);
+			for (int c = 0; c < categories.length; c++)
+			{
+				if (docFreq[t][c] != 0)
+				{
+					out.writeInt(c);
+					out.writeInt(docFreq[t][c]);
+					out.writeInt(termFreq[t][c]);
+				}
+			}
+		}
+	}
+	
+	public static CorpusStatistics readFrom(DataInputStream in) throws IOException
+	{
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not a corpus statistics file");
+		if (in.readInt() != VERSION)
+			throw new IOException("Unsupported corpus statistics version");
+		int docs = in.readInt();
+		int numCats = in.readInt();
+		String[] cats = new String[numCats];
+		int[] catCount = new int[numCats];
+		for (int c = 0; c < numCats; c++)
+		{
+			cats[c] = in.readUTF();
+			catCount[c] = in.readInt();
+		}
+		int numTerms = in.readInt();
+		String[] words = new String[numTerms];
+		int[] termTotals = new int[numTerms];
+		int[][] docFreq = new int[numTerms][numCats];
+		int[][] termFreq = new int[numTerms][numCats];
+		try
+		{
+			for (int t = 0; t < numTerms; t++)
+			{
+				words[t] = in.readUTF();
+				termTotals[t] = in.readInt();
+				int nz = in.readInt();
+				for (int i = 0; i < nz; i++)
+				{
+					int c = in.readInt();
+					docFreq[t][c] = in.readInt();
+					termFreq[t][c] = in.readInt();
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new IOException("Corrupt corpus statistics", e);
+		}
+		return new CorpusStatistics(docs, cats, catCount, words, termTotals, docFreq, termFreq);
+	}
+	
+	//direct access to the tables for learners; the arrays are shared and must not be modified
+	int[] catCounts()        { return catCount; }
+	int[][] docFreqTable()   { return docFreq; }
+	int[][] termFreqTable()  { return termFreq; }
+}
@@ -0,0 +1,58 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: LongIntMap.java
+ * 
+ * DESCRIPTION: Count-min sketch over long keys: depth rows of width int counters. The 
+ * estimate of a key's count never underestimates and overestimates by at most about 
+ * e/width of the total count with probability 1 - exp(-depth). Conservative update (only the
+ * smallest counters are raised) keeps the overestimate low. Memory is fixed at construction,
+ * so it can screen an unbounded stream of candidate n-grams.
+ **********************************************************************************************/
+
+public class CountMinSketch {
+	private final int[][] counts;
+	private final int depth;
+	private final int mask;     //width - 1, width is a power of two
+	
+	public CountMinSketch(int width, int depth)
+	{
+		if (depth < 1)
+			throw new IllegalArgumentException("Sketch depth must be at least 1");
+		this.depth = depth;
+		int w = Queue.powerOfTwo(Math.max(2, width));
+		this.mask = w - 1;
+		counts = new int[depth][w];
+	}
+	
+	//estimated number of times the key has been added
+	public int estimate(long key)
+	{
+		int min = Integer.MAX_VALUE;
+		for (int r = 0; r < depth; r++)
+			min = Math.min(min, counts[r][index(key, r)]);
+		return min;
+	}
+	
+	//counts one more occurrence of the key and returns its new estimated count
+	public int add(long key)
+	{
+		int est = estimate(key);
+		if (est == Integer.MAX_VALUE)
+			return est;
+		for (int r = 0; r < depth; r++)
+		{
+			int i = index(key, r);
+			if (counts[r][i] == est)
+				counts[r][i] = est + 1;
+		}
+		return est + 1;
+	}
+	
+	//column of the key in row r, from an independent-looking hash per row
+	private int index(long key, int r)
+	{
+		return LongIntMap.mix(key + 0x9e3779b97f4a7c15L*(r + 1)) & mask;
+	}
+}
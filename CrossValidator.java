@@ -0,0 +1,238 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: 
+ * NaiveBayesLearner.java, DocumentBuilder.java, Document.java, EvaluationReport.java,
+ * LearnerOptions.java, CorpusReader.java, DocumentHandler.java
+ * 
+ * DESCRIPTION: k-fold cross-validation over one corpus. The corpus is cleaned and stemmed 
+ * once; the tokenized documents are shuffled with a fixed seed, split into k folds, and 
+ * shared read-only by all folds. Each fold trains a NaiveBayesLearner on the other k-1 folds 
+ * and is evaluated on its own documents, with the folds running in parallel. The per-fold 
+ * reports are merged into one EvaluationReport (accuracy, micro/macro F1, confusion matrix).
+ * 
+ * Which n-grams become features depends on how often they occur in the documents tokenized so
+ * far, so a corpus tokenized once would let the test folds decide the training features. When
+ * the options ask for n-grams, the corpus read from a file is therefore kept as raw text and
+ * every fold is tokenized by its own DocumentBuilder: the training documents first, then the
+ * test documents with admission frozen. A corpus passed in already tokenized is used as is.
+ **********************************************************************************************/
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CrossValidator {
+	
+	//the training and test documents of one fold
+	public static class Fold {
+		private final List<Document> train;
+		private final List<Document> test;
+		
+		Fold(List<Document> train, List<Document> test)
+		{
+			this.train = train;
+			this.test = test;
+		}
+		
+		public List<Document> train()  { return train; }
+		public List<Document> test()   { return test; }
+	}
+	
+	//a document before cleaning and stemming
+	private static class RawDocument {
+		final String[] labels;
+		final String text;
+		
+		RawDocument(String[] labels, String text)
+		{
+			this.labels = labels;
+			this.text = text;
+		}
+	}
+	
+	private final List<Document> docs;       //tokenized corpus, in shuffled order (null if raw is used)
+	private final List<RawDocument> raw;     //untokenized corpus, in shuffled order (null if docs is used)
+	private final LearnerOptions options;    //tokenizes the raw corpus of every fold
+	private final int k;                     //number of folds
+	
+	//reads a corpus ('R' for reuters data, 'T' for excel ticket data) and tokenizes it once, or
+	//once per fold when the options ask for n-grams (see the description above)
+	public CrossValidator(String fileName, char dataType, LearnerOptions options, int k, long seed) throws IOException
+	{
+		this((options.getNgramOrder() > 1) ? null : new DocumentBuilder(options).readCorpus(fileName, dataType),
+				(options.getNgramOrder() > 1) ? readRaw(fileName, dataType) : null, options, k, seed);
+	}
+	
+	public CrossValidator(List<Document> corpus, int k, long seed)
+	{
+		this(new ArrayList<Document>(corpus), null, null, k, seed);
+	}
+	
+	private CrossValidator(List<Document> docs, List<RawDocument> raw, LearnerOptions options, int k, long seed)
+	{
+		int size = (docs != null) ? docs.size() : raw.size();
+		if (k < 2 || k > size)
+			throw new IllegalArgumentException("Number of folds must be between 2 and the number of documents");
+		//both lists get the same permutation from the same seed
+		if (docs != null) Collections.shuffle(docs, new Random(seed));
+		if (raw != null) Collections.shuffle(raw, new Random(seed));
+		this.docs = docs;
+		this.raw = raw;
+		this.options = options;
+		this.k = k;
+	}
+	
+	//the labels and text of every document of a corpus; a corpus cache holds tokenized
+	//documents, so it is not used here
+	private static List<RawDocument> readRaw(String fileName, char dataType) throws IOException
+	{
+		final List<RawDocument> raw = new ArrayList<RawDocument>();
+		CorpusReader.read(fileName, dataType, new DocumentHandler() {
+			public void document(String[] cats, String text) {
+				raw.add(new RawDocument(cats, text));
+			}
+		});
+		return raw;
+	}
+	
+	public int numFolds()
+	{
+		return k;
+	}
+	
+	//the training documents (all outside fold f) and test documents (every k-th document of the
+	//shuffled corpus, starting at f) of fold f; a raw corpus is tokenized here, so call this once
+	//per fold rather than trainFold and testFold separately
+	public Fold fold(int f)
+	{
+		List<Document> train = new ArrayList<Document>();
+		List<Document> test = new ArrayList<Document>();
+		if (docs != null)
+		{
+			for (int i = 0; i < docs.size(); i++)
+				((i % k == f) ? test : train).add(docs.get(i));
+			return new Fold(train, test);
+		}
+		
+		//n-grams are admitted from the training documents only
+		DocumentBuilder builder = new DocumentBuilder(options);
+		try
+		{
+			for (int i = 0; i < raw.size(); i++)
+			{
+				if (i % k != f)
+					train.add(builder.build(raw.get(i).labels, raw.get(i).text));
+			}
+			builder.freeze();
+			for (int i = f; i < raw.size(); i += k)
+				test.add(builder.build(raw.get(i).labels, raw.get(i).text));
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException("Cannot tokenize fold " + f, e);
+		}
+		return new Fold(train, test);
+	}
+	
+	//the documents of fold f
+	public List<Document> testFold(int f)
+	{
+		return fold(f).test();
+	}
+	
+	//all documents outside fold f
+	public List<Document> trainFold(int f)
+	{
+		return fold(f).train();
+	}
+	
+	//trains and evaluates all k folds on up to threads threads and returns the merged report
+	public EvaluationReport run(final char selectionMethod, final int features, final LearnerOptions options, int threads) 
+			throws InterruptedException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, k)));
+		try
+		{
+			List<Future<EvaluationReport>> folds = new ArrayList<Future<EvaluationReport>>();
+			for (int f = 0; f < k; f++)
+			{
+				final int fold = f;
+				folds.add(pool.submit(new Callable<EvaluationReport>() {
+					public EvaluationReport call() {
+						return evaluateFold(fold, selectionMethod, features, options);
+					}
+				}));
+			}
+			
+			EvaluationReport total = new EvaluationReport(categories());
+			for (Future<EvaluationReport> fold: folds)
+				total.add(fold.get());
+			return total;
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("Cross-validation fold failed", e.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	
+	//trains on every fold but f and evaluates on fold f
+	public EvaluationReport evaluateFold(int f, char selectionMethod, int features, LearnerOptions options)
+	{
+		Fold fold = fold(f);
+		NaiveBayesLearner learner = new NaiveBayesLearner(fold.train(), selectionMethod, features, options);
+		EvaluationReport report = new EvaluationReport(categories());
+		for (Document d: fold.test())
+			report.record(d.labels(), learner.classify(d));
+		return report;
+	}
+	
+	//every label of the corpus, so all fold reports share one confusion matrix layout
+	public List<String> categories()
+	{
+		List<String> cats = new ArrayList<String>();
+		if (docs != null)
+		{
+			for (Document d: docs)
+				for (String l: d.labels())
+					cats.add(l);
+		}
+		else
+		{
+			for (RawDocument d: raw)
+				for (String l: d.labels)
+					cats.add(l);
+		}
+		return cats;
+	}
+	
+	//usage: java CrossValidator file dataType k selectionMethod features threads report.csv report.json
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String fileName = args[0];
+		char dataType = args[1].charAt(0);
+		int k = Integer.parseInt(args[2]);
+		char method = args[3].charAt(0);
+		int features = Integer.parseInt(args[4]);
+		int threads = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		
+		LearnerOptions options = new LearnerOptions();
+		CrossValidator cv = new CrossValidator(fileName, dataType, options, k, 42);
+		EvaluationReport report = cv.run(method, features, options, threads);
+		if (args.length > 6) report.writeCsv(args[6]);
+		if (args.length > 7) report.writeJson(args[7]);
+		if (args.length <= 6) System.out.print(report.toJson());
+	}
+}
@@ -0,0 +1,46 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: none
+ * 
+ * DESCRIPTION: A labelled document after cleaning and stemming: all of its categories plus 
+ * the count of every (stemmed) term and selected n-gram in it. A document is tokenized once
+ * by a DocumentBuilder and can then be learned under all of its labels, or shared between 
+ * several learners, without being cleaned again.
+ **********************************************************************************************/
+
+import java.util.HashMap;
+
+public class Document {
+	private final String[] labels;
+	private final HashMap<String, Integer> termCounts;
+	
+	public Document(String[] labels, HashMap<String, Integer> termCounts)
+	{
+		this.labels = labels;
+		this.termCounts = termCounts;
+	}
+	
+	//all categories of this document
+	public String[] labels()
+	{
+		return labels;
+	}
+	
+	public boolean hasLabel(String label)
+	{
+		for (String l: labels)
+		{
+			if (l.equals(label))
+				return true;
+		}
+		return false;
+	}
+	
+	//key=term and value=# of occurrences in this document; must not be modified
+	public HashMap<String, Integer> termCounts()
+	{
+		return termCounts;
+	}
+}
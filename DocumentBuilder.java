@@ -0,0 +1,145 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: 
+ * TextPipeline.java, TokenHandler.java, TermDictionary.java, LearnerOptions.java, NgramWindow.java, CountMinSketch.java, LongIntMap.java, Document.java,
+ * CorpusReader.java, Metrics.java, CorpusCache.java
+ * 
+ * DESCRIPTION: Turns raw labelled text into Documents: cleans and stems the text with the
+ * options' TextPipeline and counts the stems (plus n-grams when the options ask for them). Each distinct stem becomes a String only once, through the shared term dictionary.
+ * A builder keeps n-gram screening state across documents, so one builder should tokenize
+ * a whole corpus. It reuses its buffers and is not thread-safe.
+ **********************************************************************************************/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class DocumentBuilder {
+	private final LearnerOptions options;
+	
+	/** Every stemmed term seen so far, so each distinct term becomes a String only once **/
+	private final TermDictionary terms;
+	
+	//n-gram candidates: a fixed-size sketch screens out rare n-grams, and admitted 
+	//packed n-gram keys map to an index into ngramStrings (their String form)
+	private CountMinSketch ngramSketch;
+	private LongIntMap ngramIds;
+	private List<String> ngramStrings;
+	private boolean frozen;    //no new n-grams are admitted, see freeze()
+	
+	public DocumentBuilder(LearnerOptions options)
+	{
+		this.options = options;
+		terms = new TermDictionary(1024);
+		if (options.getNgramOrder() > 1)
+		{
+			ngramSketch = new CountMinSketch(options.getSketchWidth(), options.getSketchDepth());
+			ngramIds = new LongIntMap(1024);
+			ngramStrings = new ArrayList<String>();
+		}
+	}
+	
+	//cleans, stems and counts the text of a document with the given categories
+	public Document build(String[] labels, String text) throws IOException
+	{
+		//new hashmap representing the document
+		final HashMap<String, Integer> hashDoc = new HashMap<String, Integer>();
+		
+		//Put the stems of the cleaned text into the hash-map which stores tokens and determines 
+		//how many of each token are there.
+		final NgramWindow window = (ngramSketch != null) ? new NgramWindow(options.getNgramOrder()) : null;
+		options.getPipeline().tokenize(text, new TokenHandler() {
+			public void token(char[] buf, int off, int len) {
+				int id = terms.add(buf, off, len);
+				wordCount(terms.term(id), hashDoc);
+				
+				//n-grams ending at this token are counted like tokens once they are frequent enough
+				if (window != null)
+				{
+					window.push(id);
+					for (int n = 2; n <= window.order(); n++)
+					{
+						String g = admitNgram(window, n);
+						if (g != null)
+							wordCount(g, hashDoc);
+					}
+				}
+			}
+		});
+		return new Document(labels, hashDoc);
+	}
+	
+	//stops admitting n-grams: later documents count only the n-grams admitted so far and leave
+	//the sketch as it is, so held-out documents do not influence which n-grams become features
+	public void freeze()
+	{
+		frozen = true;
+	}
+	
+	//reads and tokenizes every document of a corpus ('R' for reuters data, 'T' for excel ticket data),
+	//or reads the tokenized documents from the corpus cache if the options name a cache directory
+	public List<Document> readCorpus(String fileName, char dataType) throws IOException
+	{
+		long t0 = Metrics.start();
+		if (options.getCacheDirectory() != null)
+		{
+			List<Document> cached = new CorpusCache(new File(options.getCacheDirectory())).readCorpus(fileName, dataType, options);
+			Metrics.PARSE.recordSince(t0);
+			return cached;
+		}
+		final List<Document> docs = new ArrayList<Document>();
+		CorpusReader.read(fileName, dataType, new DocumentHandler() {
+			public void document(String[] cats, String text) throws IOException {
+				docs.add(build(cats, text));
+			}
+		});
+		Metrics.PARSE.recordSince(t0);
+		return docs;
+	}
+	
+	//counts one occurrence of the n-gram ending at the window's latest token in the sketch, and
+	//returns its String form (space separated stems) if it has been seen often enough to be a
+	//candidate feature. Occurrences before it is admitted are not counted, which undercounts a
+	//candidate by at most minNgramCount-1 but keeps rare n-grams out of every data structure.
+	private String admitNgram(NgramWindow window, int n)
+	{
+		long key = window.key(n);
+		if (key < 0)
+			return null;
+		if (frozen)
+		{
+			int idx = ngramIds.get(key, -1);
+			return (idx < 0) ? null : ngramStrings.get(idx);
+		}
+		if (ngramSketch.add(key) < options.getMinNgramCount())
+			return null;
+		int idx = ngramIds.get(key, -1);
+		if (idx < 0)
+		{
+			StringBuilder sb = new StringBuilder();
+			for (int i = n; i >= 1; i--)
+			{
+				sb.append(terms.term(window.id(i)));
+				if (i > 1) sb.append(' ');
+			}
+			idx = ngramStrings.size();
+			ngramStrings.add(sb.toString());
+			ngramIds.put(key, idx);
+		}
+		return ngramStrings.get(idx);
+	}
+	
+	//helper method for keeping count of tokens within a document
+	private static void wordCount(String token, HashMap<String, Integer> doc) 
+	{
+		Integer currentCount = doc.get(token);
+		if (currentCount == null)
+			doc.put(token, 1);
+		else 
+			doc.put(token, currentCount + 1);
+	}
+}
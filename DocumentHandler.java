@@ -0,0 +1,15 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: none
+ * 
+ * DESCRIPTION: Callback which receives each labelled document read by a CorpusReader.
+ **********************************************************************************************/
+
+import java.io.IOException;
+
+public interface DocumentHandler {
+	//called once per document with all of its categories and its raw (uncleaned) text
+	void document(String[] cats, String text) throws IOException;
+}
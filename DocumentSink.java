@@ -0,0 +1,15 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: Document.java
+ * 
+ * DESCRIPTION: Callback which receives each tokenized document streamed from a CorpusCache.
+ **********************************************************************************************/
+
+import java.io.IOException;
+
+public interface DocumentSink {
+	//called once per document, in corpus order
+	void document(Document d) throws IOException;
+}
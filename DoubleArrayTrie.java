@@ -0,0 +1,325 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: TermLookup.java, IntQueue.java
+ *
+ * DESCRIPTION: Term lookup for a fixed set of terms, compiled into a double-array trie. Every
+ * trie node is a state s; its child on character code c is state t = base[s] + c, which exists
+ * only if check[t] == s. A term ends in state s if s has a child on code 0 (end of term), whose
+ * base holds -(id + 1). A lookup walks the chars of a span one transition at a time, so a token
+ * outside the set is rejected at its first character that leaves the trie, without hashing or
+ * copying it; a term is found after exactly one transition per char. Characters are renumbered
+ * 1, 2, 3, ... in order of first use, so the arrays stay small for the usual small alphabets.
+ * The arrays extend at least to base[s] + (largest code) for every inner state s, and a trie
+ * read from a file is checked for this and for terminal ids in [0, size) before it is used.
+ **********************************************************************************************/
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class DoubleArrayTrie implements TermLookup {
+	private final char[] code;    //char -> its code (0 = a char in no term); chars past the end have none
+	private final int[] base;
+	private final int[] check;    //parent state of each state (-1 marks a free slot)
+	private final int size;       //number of terms
+
+	private DoubleArrayTrie(char[] code, int[] base, int[] check, int size)
+	{
+		this.code = code;
+		this.base = base;
+		this.check = check;
+		this.size = size;
+	}
+
+	//builds the trie for distinct terms; the i-th term in iteration order gets id i
+	public static DoubleArrayTrie build(Iterable<String> terms)
+	{
+		List<String> keys = new ArrayList<String>();
+		for (String term: terms)
+			keys.add(term);
+		return new Builder(keys).build();
+	}
+
+/********************************************************************************************
+ * Lookup
+ * ******************************************************************************************/
+	public int size()
+	{
+		return size;
+	}
+
+	public int get(char[] buf, int off, int len)
+	{
+		int s = 0;
+		for (int i = off; i < off + len; i++)
+		{
+			char ch = buf[i];
+			if (ch >= code.length || code[ch] == 0)
+				return -1;
+			int t = base[s] + code[ch];
+			if (t >= check.length || check[t] != s)
+				return -1;
+			s = t;
+		}
+		int t = base[s];
+		return (t < check.length && check[t] == s) ? -base[t] - 1 : -1;
+	}
+
+	public int get(String term)
+	{
+		char[] c = term.toCharArray();
+		return get(c, 0, c.length);
+	}
+
+	//# of states (slots of base and check), including unused ones
+	public int numSlots()
+	{
+		return base.length;
+	}
+
+/********************************************************************************************
+ * File format: # of terms, # of char codes, the codes, # of slots, (base, check) per slot
+ * ******************************************************************************************/
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(size);
+		out.writeInt(code.length);
+		for (char c: code)
+			out.writeChar(c);
+		out.writeInt(base.length);
+		for (int s = 0; s < base.length; s++)
+		{
+			out.writeInt(base[s]);
+			out.writeInt(check[s]);
+		}
+	}
+
+	public static DoubleArrayTrie readFrom(DataInputStream in) throws IOException
+	{
+		int size = in.readInt();
+		int codes = in.readInt();
+		if (size < 0 || codes < 0 || codes > Character.MAX_VALUE + 1)
+			throw new IOException("Corrupt trie");
+		char[] code = new char[codes];
+		int maxCode = 0;
+		for (int i = 0; i < codes; i++)
+		{
+			code[i] = in.readChar();
+			maxCode = Math.max(maxCode, code[i]);
+		}
+		int slots = in.readInt();
+		if (slots < 1)
+			throw new IOException("Corrupt trie");
+		int[] base = new int[slots];
+		int[] check = new int[slots];
+		for (int s = 0; s < slots; s++)
+		{
+			base[s] = in.readInt();
+			check[s] = in.readInt();
+			if (check[s] < -1 || check[s] >= slots)
+				throw new IOException("Corrupt trie");
+		}
+		if (check[0] != 0)
+			throw new IOException("Corrupt trie");
+		
+		//tries written before the arrays were padded end at their last used slot; pad them as
+		//build does (an inner base outside the arrays is caught below, not padded for)
+		int length = slotsNeeded(base, check, slots, maxCode);
+		if (length > slots)
+		{
+			base = Arrays.copyOf(base, length);
+			check = Arrays.copyOf(check, length);
+			Arrays.fill(check, slots, length, -1);
+		}
+		
+		//every transition of a lookup stays inside the arrays, and every term ends in a valid id
+		for (int s = 0; s < slots; s++)
+		{
+			if (check[s] < 0)
+				continue;
+			if (isTerminal(base, check, s))
+			{
+				if (base[s] > -1 || base[s] < -size)
+					throw new IOException("Corrupt trie");
+			}
+			else if (base[s] < 0 || (long) base[s] + maxCode >= length)
+				throw new IOException("Corrupt trie");
+		}
+		return new DoubleArrayTrie(code, base, check, size);
+	}
+	
+	//whether the used state s is the end-of-term child (code 0) of its parent
+	private static boolean isTerminal(int[] base, int[] check, int s)
+	{
+		return s != 0 && base[check[s]] == s;
+	}
+	
+	//# of slots so that base[s] + maxCode is a slot for every used inner state s < used whose
+	//base lies in [0, used); at least used
+	private static int slotsNeeded(int[] base, int[] check, int used, int maxCode)
+	{
+		int need = used;
+		for (int s = 0; s < used; s++)
+		{
+			if (check[s] >= 0 && !isTerminal(base, check, s) && base[s] >= 0 && base[s] < used)
+				need = Math.max(need, base[s] + maxCode + 1);
+		}
+		return need;
+	}
+
+/********************************************************************************************
+ * Construction: the terms are sorted, so the terms below a node are a contiguous range sharing
+ * its prefix and its children are the runs of equal chars at the node's depth. Each node's base
+ * is the first one at which all of its children fall on free slots.
+ * ******************************************************************************************/
+	private static final class Builder {
+		private final String[] keys;   //sorted
+		private final int[] ids;       //id of each sorted key
+		private char[] code = new char[128];
+		private int numCodes = 0;
+		private int[] base = new int[1024];
+		private int[] check = new int[1024];
+		private int used = 1;          //slots [0, used) may be in use
+		private int firstFree = 1;     //no free slot below this one
+
+		Builder(final List<String> terms)
+		{
+			Integer[] order = new Integer[terms.size()];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) { return terms.get(a).compareTo(terms.get(b)); }
+			});
+			keys = new String[order.length];
+			ids = new int[order.length];
+			for (int i = 0; i < order.length; i++)
+			{
+				keys[i] = terms.get(order[i]);
+				ids[i] = order[i];
+				if (i > 0 && keys[i].equals(keys[i - 1]))
+					throw new IllegalArgumentException("Duplicate term: " + keys[i]);
+			}
+			Arrays.fill(check, -1);
+			check[0] = 0;   //the root
+		}
+
+		DoubleArrayTrie build()
+		{
+			if (keys.length > 0)
+				place(0, 0, keys.length, 0);
+			char[] c = Arrays.copyOf(code, maxChar() + 1);
+			int slots = slotsNeeded(base, check, used, numCodes);
+			if (slots > check.length)
+				grow(slots);
+			return new DoubleArrayTrie(c, Arrays.copyOf(base, slots), Arrays.copyOf(check, slots), keys.length);
+		}
+
+		//gives state s, the node of the terms keys[lo, hi) at the given depth, its base and
+		//places its children, then their subtrees
+		private void place(int s, int lo, int hi, int depth)
+		{
+			//the children: code 0 if a term ends here (it sorts first), then one per distinct char
+			IntQueue codes = new IntQueue();
+			IntQueue starts = new IntQueue();
+			for (int i = lo; i < hi; )
+			{
+				int c = (keys[i].length() == depth) ? 0 : codeOf(keys[i].charAt(depth));
+				int j = i + 1;
+				if (c != 0)
+				{
+					char ch = keys[i].charAt(depth);
+					while (j < hi && keys[j].charAt(depth) == ch)
+						j++;
+				}
+				codes.enqueue(c);
+				starts.enqueue(i);
+				i = j;
+			}
+			int[] cs = codes.toArray();
+			int[] st = starts.toArray();
+
+			int b = findBase(cs);
+			base[s] = b;
+			for (int c: cs)
+			{
+				check[b + c] = s;
+				used = Math.max(used, b + c + 1);
+			}
+			while (firstFree < check.length && check[firstFree] >= 0)
+				firstFree++;
+
+			for (int k = 0; k < cs.length; k++)
+			{
+				int t = b + cs[k];
+				int end = (k + 1 < cs.length) ? st[k + 1] : hi;
+				if (cs[k] == 0)
+					base[t] = -ids[st[k]] - 1;
+				else
+					place(t, st[k], end, depth + 1);
+			}
+		}
+
+		//the first base >= 1 at which the slots of all children codes are free
+		private int findBase(int[] cs)
+		{
+			int min = Integer.MAX_VALUE, max = 0;
+			for (int c: cs)
+			{
+				min = Math.min(min, c);
+				max = Math.max(max, c);
+			}
+			for (int b = Math.max(1, firstFree - min); ; b++)
+			{
+				int top = b + max;
+				if (top >= check.length)
+					grow(top + 1);
+				boolean free = true;
+				for (int c: cs)
+				{
+					if (check[b + c] >= 0)
+					{
+						free = false;
+						break;
+					}
+				}
+				if (free)
+					return b;
+			}
+		}
+
+		private int codeOf(char ch)
+		{
+			if (ch >= code.length)
+				code = Arrays.copyOf(code, Math.max(ch + 1, 2*code.length));
+			if (code[ch] == 0)
+				code[ch] = (char) ++numCodes;
+			return code[ch];
+		}
+
+		private int maxChar()
+		{
+			int max = -1;
+			for (int ch = 0; ch < code.length; ch++)
+			{
+				if (code[ch] != 0)
+					max = ch;
+			}
+			return max;
+		}
+
+		private void grow(int min)
+		{
+			int n = Math.max(min, 2*check.length);
+			int old = check.length;
+			base = Arrays.copyOf(base, n);
+			check = Arrays.copyOf(check, n);
+			Arrays.fill(check, old, n, -1);
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: LabelStats.java, RedBlackBST.java
+ * 
+ * DESCRIPTION: Results of evaluating a classifier on labelled documents: accuracy (the guess
+ * is one of the document's labels), per-label and micro/macro F1 through LabelStats, and a 
+ * confusion matrix of actual against guessed category. For a document with several labels 
+ * the actual category is the guess when the guess is correct, and its first label otherwise.
+ * Reports can be merged (e.g. over the folds of a cross-validation) and written as CSV or JSON.
+ **********************************************************************************************/
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class EvaluationReport {
+	private final String[] categories;                 //all categories, in sorted order
+	private final RedBlackBST<String, Integer> index;  //category -> row/column of the matrix
+	private final int[][] confusion;                   //confusion[actual][guess] = # of documents
+	private final LabelStats stats;
+	private int numDocs;
+	private int correctCount;
+	private List<Double> foldAccuracies;
+	
+	public EvaluationReport(Iterable<String> categories)
+	{
+		index = new RedBlackBST<String, Integer>();
+		for (String c: categories)
+			index.put(c, 0);
+		this.categories = new String[index.size()];
+		int i = 0;
+		for (String c: index.keys())
+		{
+			this.categories[i] = c;
+			index.put(c, i++);
+		}
+		confusion = new int[this.categories.length][this.categories.length];
+		stats = new LabelStats();
+		foldAccuracies = new ArrayList<Double>();
+	}
+	
+	//records the guessed category of one document against its actual labels
+	public void record(String[] actual, String guess)
+	{
+		boolean correct = false;
+		for (String a: actual)
+		{
+			if (a.equals(guess))
+				correct = true;
+		}
+		if (correct)
+			correctCount++;
+		numDocs++;
+		stats.record(actual, Collections.singletonList(guess));
+		
+		Integer a = index.get(correct ? guess : actual[0]);
+		Integer g = index.get(guess);
+		if (a != null && g != null)
+			confusion[a][g]++;
+	}
+	
+	//adds all counts of another report over the same categories (e.g. one fold) into this one
+	public void add(EvaluationReport other)
+	{
+		if (other.categories.length != categories.length)
+			throw new IllegalArgumentException("Reports have different categories");
+		for (int a = 0; a < categories.length; a++)
+		{
+			for (int g = 0; g < categories.length; g++)
+				confusion[a][g] += other.confusion[a][g];
+		}
+		stats.add(other.stats);
+		numDocs += other.numDocs;
+		correctCount += other.correctCount;
+		foldAccuracies.add(other.accuracy());
+	}
+	
+	public int numDocs()          { return numDocs; }
+	public int correctCount()     { return correctCount; }
+	public LabelStats labelStats() { return stats; }
+	public double microF1()       { return stats.microF1(); }
+	public double macroF1()       { return stats.macroF1(); }
+	
+	public double accuracy()
+	{
+		return (numDocs == 0) ? 0 : (double) correctCount/numDocs;
+	}
+	
+	//# of documents of the actual category that were guessed as the guessed category
+	public int confusion(String actual, String guess)
+	{
+		return confusion[index.get(actual)][index.get(guess)];
+	}
+	
+	//accuracy of each report merged with add(), in order
+	public List<Double> foldAccuracies()
+	{
+		return foldAccuracies;
+	}
+	
+/********************************************************************************************
+ * Output
+ * ******************************************************************************************/
+	//summary metrics, one "metric,value" row each, followed by the confusion matrix 
+	//(rows = actual category, columns = guessed category)
+	public void writeCsv(String fileName) throws IOException
+	{
+		PrintWriter out = new PrintWriter(new FileWriter(fileName));
+		try
+		{
+			out.println("metric,value");
+			out.println("documents," + numDocs);
+			out.println("correct," + correctCount);
+			out.println("accuracy," + accuracy());
+			out.println("micro_f1," + microF1());
+			out.println("macro_f1," + macroF1());
+			for (int f = 0; f < foldAccuracies.size(); f++)
+				out.println("fold_" + (f + 1) + "_accuracy," + foldAccuracies.get(f));
+			out.println();
+			
+			out.print("actual\\guess");
+			for (String c: categories)
+				out.print("," + csv(c));
+			out.println();
+			for (int a = 0; a < categories.length; a++)
+			{
+				out.print(csv(categories[a]));
+				for (int g = 0; g < categories.length; g++)
+					out.print("," + confusion[a][g]);
+				out.println();
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	public void writeJson(String fileName) throws IOException
+	{
+		PrintWriter out = new PrintWriter(new FileWriter(fileName));
+		try
+		{
+			out.print(toJson());
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	public String toJson()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"documents\": ").append(numDocs).append(",\n");
+		sb.append("  \"correct\": ").append(correctCount).append(",\n");
+		sb.append("  \"accuracy\": ").append(accuracy()).append(",\n");
+		sb.append("  \"microF1\": ").append(microF1()).append(",\n");
+		sb.append("  \"macroF1\": ").append(macroF1()).append(",\n");
+		sb.append("  \"foldAccuracies\": [");
+		for (int f = 0; f < foldAccuracies.size(); f++)
+			sb.append(f > 0 ? ", " : "").append(foldAccuracies.get(f));
+		sb.append("],\n");
+		sb.append("  \"labels\": {");
+		boolean first = true;
+		for (String l: stats.labels())
+		{
+			sb.append(first ? "\n" : ",\n");
+			first = false;
+			sb.append("    ").append(json(l)).append(": {\"precision\": ").append(stats.precision(l))
+			  .append(", \"recall\": ").append(stats.recall(l)).append(", \"f1\": ").append(stats.f1(l)).append("}");
+		}
+		sb.append("\n  },\n");
+		sb.append("  \"categories\": [");
+		for (int i = 0; i < categories.length; i++)
+			sb.append(i > 0 ? ", " : "").append(json(categories[i]));
+		sb.append("],\n");
+		sb.append("  \"confusion\": [");
+		for (int a = 0; a < categories.length; a++)
+		{
+			sb.append(a > 0 ? ",\n    [" : "\n    [");
+			for (int g = 0; g < categories.length; g++)
+				sb.append(g > 0 ? ", " : "").append(confusion[a][g]);
+			sb.append("]");
+		}
+		sb.append("\n  ]\n}\n");
+		return sb.toString();
+	}
+	
+	//quotes a CSV field if needed
+	private static String csv(String s)
+	{
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+			return s;
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+	
+	//JSON string literal
+	static String json(String s)
+	{
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			switch (c)
+			{
+				case '"':  sb.append("\\\""); break;
+				case '\\': sb.append("\\\\"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\t': sb.append("\\t"); break;
+				default:
+					if (c < 0x20)
+						sb.append(String.format("\\u%04x", (int) c));
+					else
+						sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
@@ -0,0 +1,107 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: none
+ * 
+ * DESCRIPTION: Hashing trick for text features. Tokens (as char spans) are hashed with 
+ * MurmurHash3 (x86, 32-bit) over their UTF-16 code units, two chars per 32-bit block, and 
+ * the hash is reduced to one of 2^bits buckets. No dictionary of terms is needed, so the 
+ * feature space has a fixed size however large the vocabulary grows.
+ **********************************************************************************************/
+
+public class FeatureHasher {
+	private static final int C1 = 0xcc9e2d51;
+	private static final int C2 = 0x1b873593;
+	
+	private final int bits;   //log2 of the number of buckets
+	private final int mask;   //number of buckets - 1
+	private final int seed;
+	
+	public FeatureHasher(int bits)
+	{
+		this(bits, 0);
+	}
+	
+	public FeatureHasher(int bits, int seed)
+	{
+		if (bits < 1 || bits > 30)
+			throw new IllegalArgumentException("Number of hash bits must be between 1 and 30");
+		this.bits = bits;
+		this.mask = (1 << bits) - 1;
+		this.seed = seed;
+	}
+	
+	public int bits()
+	{
+		return bits;
+	}
+	
+	public int numBuckets()
+	{
+		return mask + 1;
+	}
+	
+	//bucket of the token in buf[off, off+len), in [0, numBuckets())
+	public int bucket(char[] buf, int off, int len)
+	{
+		return murmur3(buf, off, len, seed) & mask;
+	}
+	
+	public int bucket(String token)
+	{
+		char[] c = token.toCharArray();
+		return bucket(c, 0, c.length);
+	}
+	
+	//MurmurHash3_x86_32 of the chars in buf[off, off+len)
+	public static int murmur3(char[] buf, int off, int len, int seed)
+	{
+		int h1 = seed;
+		int end = off + (len & ~1);
+		
+		//body: two chars form one 32-bit block
+		for (int i = off; i < end; i += 2)
+		{
+			int k1 = buf[i] | (buf[i + 1] << 16);
+			h1 = mixH1(h1, mixK1(k1));
+		}
+		
+		//tail: a single remaining char
+		if ((len & 1) == 1)
+		{
+			int k1 = buf[end];
+			h1 ^= mixK1(k1);
+		}
+		
+		//finalization, length counted in bytes
+		return fmix(h1, 2*len);
+	}
+	
+	private static int mixK1(int k1)
+	{
+		k1 *= C1;
+		k1 = Integer.rotateLeft(k1, 15);
+		k1 *= C2;
+		return k1;
+	}
+	
+	private static int mixH1(int h1, int k1)
+	{
+		h1 ^= k1;
+		h1 = Integer.rotateLeft(h1, 13);
+		h1 = h1*5 + 0xe6546b64;
+		return h1;
+	}
+	
+	private static int fmix(int h1, int length)
+	{
+		h1 ^= length;
+		h1 ^= h1 >>> 16;
+		h1 *= 0x85ebca6b;
+		h1 ^= h1 >>> 13;
+		h1 *= 0xc2b2ae35;
+		h1 ^= h1 >>> 16;
+		return h1;
+	}
+}
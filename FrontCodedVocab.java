@@ -0,0 +1,219 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: IntQueue.java
+ *
+ * DESCRIPTION: Compact, read-only list of sorted terms. Terms are grouped into buckets of
+ * BUCKET terms; the first term of a bucket is stored whole and every other term as the length
+ * of the prefix it shares with the term before it plus the rest of its UTF-8 bytes. Sorted
+ * vocabularies share long prefixes (stemmed words, n-grams starting with the same word), so
+ * this is usually much smaller than a String per term. A term's rank is found by binary search
+ * over the bucket heads and a scan of one bucket.
+ **********************************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class FrontCodedVocab implements Iterable<String> {
+	private static final int BUCKET = 16;
+
+	private final byte[] data;      //the encoded terms, back to back
+	private final int[] bucket;     //offset in data of the first term of each bucket
+	private final int size;         //number of terms
+
+	//front-codes terms given in strictly increasing order (e.g. the keys of a RedBlackBST)
+	public FrontCodedVocab(Iterable<String> sortedTerms)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IntQueue heads = new IntQueue();
+		String prevTerm = null;
+		byte[] prev = new byte[0];
+		int n = 0;
+		for (String term: sortedTerms)
+		{
+			if (prevTerm != null && prevTerm.compareTo(term) >= 0)
+				throw new IllegalArgumentException("Terms are not in increasing order: " + prevTerm + ", " + term);
+			byte[] cur = term.getBytes(StandardCharsets.UTF_8);
+			int shared = 0;
+			if (n % BUCKET == 0)
+				heads.enqueue(out.size());
+			else
+			{
+				while (shared < prev.length && shared < cur.length && prev[shared] == cur[shared])
+					shared++;
+			}
+			writeVarInt(out, shared);
+			writeVarInt(out, cur.length - shared);
+			out.write(cur, shared, cur.length - shared);
+			prev = cur;
+			prevTerm = term;
+			n++;
+		}
+		data = out.toByteArray();
+		bucket = heads.toArray();
+		size = n;
+	}
+
+	private FrontCodedVocab(byte[] data, int[] bucket, int size)
+	{
+		this.data = data;
+		this.bucket = bucket;
+		this.size = size;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	//# of bytes of encoded terms
+	public int byteSize()
+	{
+		return data.length;
+	}
+
+	//the term of rank i
+	public String term(int i)
+	{
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("No term of rank " + i);
+		Decoder d = new Decoder(i/BUCKET);
+		for (int k = i % BUCKET; k > 0; k--)
+			d.next();
+		return d.next();
+	}
+
+	//rank of the term, or -1 if it is not in the list
+	public int rank(String term)
+	{
+		//last bucket whose first term is <= term
+		int lo = 0, hi = bucket.length - 1, b = -1;
+		while (lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			int cmp = new Decoder(mid).next().compareTo(term);
+			if (cmp == 0)
+				return mid*BUCKET;
+			if (cmp < 0)
+			{
+				b = mid;
+				lo = mid + 1;
+			}
+			else
+				hi = mid - 1;
+		}
+		if (b < 0)
+			return -1;
+		Decoder d = new Decoder(b);
+		d.next();
+		for (int i = b*BUCKET + 1; i < Math.min(size, (b + 1)*BUCKET); i++)
+		{
+			int cmp = d.next().compareTo(term);
+			if (cmp == 0)
+				return i;
+			if (cmp > 0)
+				break;
+		}
+		return -1;
+	}
+
+	//all terms in order
+	public Iterator<String> iterator()
+	{
+		return new Iterator<String>() {
+			private final Decoder d = new Decoder(0);
+			private int i = 0;
+			public boolean hasNext() { return i < size; }
+			public String next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				i++;
+				return d.next();
+			}
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+
+/*******************************************************************************************
+ * File format: # of terms, # of buckets, bucket offsets, # of bytes, the encoded terms
+ * ******************************************************************************************/
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(size);
+		out.writeInt(bucket.length);
+		for (int b: bucket)
+			out.writeInt(b);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	public static FrontCodedVocab readFrom(DataInputStream in) throws IOException
+	{
+		int size = in.readInt();
+		int buckets = in.readInt();
+		if (size < 0 || buckets != (size + BUCKET - 1)/BUCKET)
+			throw new IOException("Corrupt front-coded vocabulary");
+		int[] bucket = new int[buckets];
+		for (int b = 0; b < buckets; b++)
+			bucket[b] = in.readInt();
+		byte[] data = new byte[in.readInt()];
+		in.readFully(data);
+		return new FrontCodedVocab(data, bucket, size);
+	}
+
+	//decodes the terms from the start of a bucket onwards, each from the one before it
+	private final class Decoder {
+		private int pos;
+		private byte[] term = new byte[32];
+		private int len;
+
+		Decoder(int b)
+		{
+			pos = bucket[b];
+		}
+
+		String next()
+		{
+			int shared = readVarInt();
+			int rest = readVarInt();
+			if (shared + rest > term.length)
+			{
+				byte[] t = new byte[Math.max(shared + rest, 2*term.length)];
+				System.arraycopy(term, 0, t, 0, shared);
+				term = t;
+			}
+			System.arraycopy(data, pos, term, shared, rest);
+			pos += rest;
+			len = shared + rest;
+			return new String(term, 0, len, StandardCharsets.UTF_8);
+		}
+
+		private int readVarInt()
+		{
+			int v = 0;
+			for (int shift = 0; ; shift += 7)
+			{
+				byte b = data[pos++];
+				v |= (b & 0x7f) << shift;
+				if (b >= 0)
+					return v;
+			}
+		}
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int v)
+	{
+		while ((v & ~0x7f) != 0)
+		{
+			out.write((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		out.write(v);
+	}
+}
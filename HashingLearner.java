@@ -0,0 +1,194 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: 
+ * FeatureHasher.java, CorpusReader.java, RedBlackBST.java, TextPipeline.java, TokenHandler.java
+ * 
+ * DESCRIPTION: Feature-hashing variant of NaiveBayesLearner for very large or open 
+ * vocabularies. Documents are cleaned and stemmed exactly as in NaiveBayesLearner, but every
+ * stem is hashed into one of 2^bits buckets instead of being stored in a vocabulary tree. All
+ * counts and probabilities live in fixed-size primitive arrays, so memory is bounded by 
+ * 2^bits * numCats whatever the size of the vocabulary, and classification needs no 
+ * dictionary. There is no feature selection: every bucket is a feature.
+ **********************************************************************************************/
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class HashingLearner {
+	
+	private final FeatureHasher hasher;
+	private final int numBuckets;
+	
+	private int numDocs;       //total # of documents inputted
+	private int numCats;       //total # of categories found
+	private int usedBuckets;   //# of buckets which received at least one token
+	
+	//category names in sorted order, and their index while training (in order of first appearance)
+	private RedBlackBST<String, Integer> categories;
+	private String[] catNames;
+	
+	//training counts: bucketCounts.get(i)[b] = # of tokens in bucket b in the i-th category seen
+	private List<int[]> bucketCounts;
+	private List<Integer> docCounts;
+	
+	private double[] logPrior;       //log prior probability of each category
+	/*log likelihoods, bucket-major so one token touches one contiguous row:
+	 * logProb[b*numCats + c] = log P(bucket b | class c) */
+	private double[] logProb;
+	
+	//cleaning and stemming of document text
+	private final TextPipeline pipeline;
+	
+/******************************************************************************************** 
+ * Constructor which reads and hashes the training documents and computes the fixed-size
+ * probability tables.
+ * ******************************************************************************************/
+	//dataType - 'R' for reuters data, 'T' for excel ticket data
+	//bits - log2 of the number of hash buckets (e.g. 18 for 262144 buckets)
+	public HashingLearner(String fileName, char dataType, int bits) throws IOException
+	{
+		this(fileName, dataType, bits, TextPipeline.REUTERS);
+	}
+	
+	//as above, cleaning the text with the given pipeline (e.g. TextPipeline.TICKETS)
+	public HashingLearner(String fileName, char dataType, int bits, TextPipeline pipeline) throws IOException
+	{
+		this.pipeline = pipeline;
+		hasher = new FeatureHasher(bits);
+		numBuckets = hasher.numBuckets();
+		categories = new RedBlackBST<String, Integer>();
+		bucketCounts = new ArrayList<int[]>();
+		docCounts = new ArrayList<Integer>();
+		numDocs = 0;
+		
+		CorpusReader.read(fileName, dataType, new DocumentHandler() {
+			public void document(String[] cats, String text) throws IOException {
+				learnDoc(cats, text);
+				numDocs++;
+			}
+		});
+		
+		numCats = categories.size();
+		computeProbabilities();
+		
+		//training counts are no longer needed
+		bucketCounts = null;
+		docCounts = null;
+	}
+	
+/******************************************************************************************** 
+ * Public Methods
+ * ******************************************************************************************/
+	//returns the category which a new document d is most likely to belong to
+	public String classify(String d) throws IOException
+	{
+		final double[] score = new double[numCats];
+		System.arraycopy(logPrior, 0, score, 0, numCats);
+		
+		pipeline.tokenize(d, new TokenHandler() {
+			public void token(char[] buf, int off, int len) {
+				int row = hasher.bucket(buf, off, len)*numCats;
+				for (int c = 0; c < numCats; c++)
+					score[c] += logProb[row + c];
+			}
+		});
+		
+		int best = 0;
+		for (int c = 1; c < numCats; c++)
+		{
+			if (score[c] > score[best])
+				best = c;
+		}
+		return catNames[best];
+	}
+	
+	public int numBuckets()
+	{
+		return numBuckets;
+	}
+	
+	public void printData()
+	{
+		System.out.println();
+		System.out.println("------Input Data Summary------");
+		System.out.println("Number of Documents: " + numDocs);
+		System.out.println("Number of Categories: " + numCats);
+		System.out.println("Hash Buckets Used: " + usedBuckets + " of " + numBuckets);
+		System.out.println();
+	}
+	
+/******************************************************************************************** 
+ * Private Methods
+ * ******************************************************************************************/
+	//hash each stemmed token of the document into the bucket counts of all of its categories
+	private void learnDoc(String[] cats, String text) throws IOException
+	{
+		final int[][] counts = new int[cats.length][];
+		for (int i = 0; i < cats.length; i++)
+		{
+			Integer c = categories.get(cats[i]);
+			if (c == null)
+			{
+				c = bucketCounts.size();
+				categories.put(cats[i], c);
+				bucketCounts.add(new int[numBuckets]);
+				docCounts.add(0);
+			}
+			counts[i] = bucketCounts.get(c);
+			docCounts.set(c, docCounts.get(c) + 1);
+		}
+		
+		pipeline.tokenize(text, new TokenHandler() {
+			public void token(char[] buf, int off, int len) {
+				int b = hasher.bucket(buf, off, len);
+				for (int[] count: counts)
+					count[b]++;
+			}
+		});
+	}
+	
+	//Laplace-smoothed log likelihoods over the buckets in use, and log priors
+	private void computeProbabilities()
+	{
+		catNames = new String[numCats];
+		logPrior = new double[numCats];
+		logProb = new double[numBuckets*numCats];
+		
+		//buckets in use play the role of the vocabulary size in the smoothing denominator
+		boolean[] used = new boolean[numBuckets];
+		for (int[] count: bucketCounts)
+		{
+			for (int b = 0; b < numBuckets; b++)
+			{
+				if (count[b] > 0)
+					used[b] = true;
+			}
+		}
+		usedBuckets = 0;
+		for (boolean u: used)
+		{
+			if (u) usedBuckets++;
+		}
+		
+		//categories are stored in sorted order, like masterTree in NaiveBayesLearner
+		int c = 0;
+		for (String cat: categories.keys())
+		{
+			int i = categories.get(cat);
+			int[] count = bucketCounts.get(i);
+			long total = 0;
+			for (int b = 0; b < numBuckets; b++)
+				total += count[b];
+			
+			catNames[c] = cat;
+			logPrior[c] = Math.log((double) docCounts.get(i)/numDocs);
+			double denom = Math.log(total + usedBuckets);
+			for (int b = 0; b < numBuckets; b++)
+				logProb[b*numCats + c] = Math.log(count[b] + 1) - denom;
+			c++;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: WritableWeights.java, ScoringKernel.java
+ * 
+ * DESCRIPTION: Weight table in a Java double[] (the default); scoring runs ScoringKernel's 
+ * HEAP kernel (the Vector API one when its module is present) directly over the array.
+ **********************************************************************************************/
+
+public class HeapWeights implements WritableWeights {
+	private final double[] w;
+	
+	public HeapWeights(int size)
+	{
+		w = new double[size];
+	}
+	
+	public int size()                  { return w.length; }
+	public double get(int i)           { return w[i]; }
+	public void set(int i, double v)   { w[i] = v; }
+	
+	public void accumulate(int numCats, int[] rows, double[] x, int n, double[] score)
+	{
+		ScoringKernel.HEAP.accumulate(w, numCats, rows, x, n, score);
+	}
+}
@@ -0,0 +1,111 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: none
+ *
+ * DESCRIPTION: Decodes HTML character references in text: numeric ones (&#233; and &#xE9;)
+ * and the named entities of HTML 4's Latin-1 set plus the common markup and typographic ones
+ * (&amp; &lt; &quot; &nbsp; &rsquo; &mdash; &euro; ...). A reference must end with ';'.
+ * Anything that is not a known, valid reference is kept as it is.
+ **********************************************************************************************/
+
+import java.util.HashMap;
+
+public class HtmlEntities {
+	//named entities for U+00A0 to U+00FF, in order
+	private static final String[] LATIN1 = {
+		"nbsp", "iexcl", "cent", "pound", "curren", "yen", "brvbar", "sect", "uml", "copy", "ordf",
+		"laquo", "not", "shy", "reg", "macr", "deg", "plusmn", "sup2", "sup3", "acute", "micro", "para",
+		"middot", "cedil", "sup1", "ordm", "raquo", "frac14", "frac12", "frac34", "iquest", "Agrave",
+		"Aacute", "Acirc", "Atilde", "Auml", "Aring", "AElig", "Ccedil", "Egrave", "Eacute", "Ecirc",
+		"Euml", "Igrave", "Iacute", "Icirc", "Iuml", "ETH", "Ntilde", "Ograve", "Oacute", "Ocirc",
+		"Otilde", "Ouml", "times", "Oslash", "Ugrave", "Uacute", "Ucirc", "Uuml", "Yacute", "THORN",
+		"szlig", "agrave", "aacute", "acirc", "atilde", "auml", "aring", "aelig", "ccedil", "egrave",
+		"eacute", "ecirc", "euml", "igrave", "iacute", "icirc", "iuml", "eth", "ntilde", "ograve",
+		"oacute", "ocirc", "otilde", "ouml", "divide", "oslash", "ugrave", "uacute", "ucirc", "uuml",
+		"yacute", "thorn", "yuml"
+	};
+
+	private static final HashMap<String, Integer> NAMED = new HashMap<String, Integer>();
+	private static final int MAX_NAME = 8;
+	static {
+		for (int i = 0; i < LATIN1.length; i++)
+			NAMED.put(LATIN1[i], 0xA0 + i);
+		String[] names = { "amp", "lt", "gt", "quot", "apos", "OElig", "oelig", "Scaron", "scaron",
+				"Yuml", "ndash", "mdash", "lsquo", "rsquo", "sbquo", "ldquo", "rdquo", "bdquo", "bull",
+				"hellip", "prime", "lsaquo", "rsaquo", "euro", "trade", "ensp", "emsp", "thinsp" };
+		int[] codes = { '&', '<', '>', '"', '\'', 0x152, 0x153, 0x160, 0x161,
+				0x178, 0x2013, 0x2014, 0x2018, 0x2019, 0x201A, 0x201C, 0x201D, 0x201E, 0x2022,
+				0x2026, 0x2032, 0x2039, 0x203A, 0x20AC, 0x2122, 0x2002, 0x2003, 0x2009 };
+		for (int i = 0; i < names.length; i++)
+			NAMED.put(names[i], codes[i]);
+	}
+
+	//appends text to out with every character reference replaced by its char(s); returns out
+	public static StringBuilder decode(CharSequence text, StringBuilder out)
+	{
+		int n = text.length();
+		int copied = 0;
+		for (int i = 0; i < n; i++)
+		{
+			if (text.charAt(i) != '&')
+				continue;
+			int end = referenceEnd(text, i);
+			if (end < 0)
+				continue;
+			int cp = codePoint(text, i + 1, end);
+			if (cp < 0)
+				continue;
+			out.append(text, copied, i).appendCodePoint(cp);
+			copied = end + 1;
+			i = end;
+		}
+		return out.append(text, copied, n);
+	}
+
+	//index of the ';' closing a reference starting with '&' at i, or -1
+	private static int referenceEnd(CharSequence text, int i)
+	{
+		int limit = Math.min(text.length(), i + 2 + MAX_NAME);
+		for (int j = i + 1; j < limit; j++)
+		{
+			char c = text.charAt(j);
+			if (c == ';')
+				return (j > i + 1) ? j : -1;
+			if (!(c < 128 && (Character.isLetterOrDigit(c) || c == '#')))
+				return -1;
+		}
+		return -1;
+	}
+
+	//the code point of the reference text[start, end) (without '&' and ';'), or -1 if it is not valid
+	private static int codePoint(CharSequence text, int start, int end)
+	{
+		if (text.charAt(start) != '#')
+		{
+			Integer cp = NAMED.get(text.subSequence(start, end).toString());
+			return (cp != null) ? cp : -1;
+		}
+		int radix = 10;
+		int i = start + 1;
+		if (i < end && (text.charAt(i) == 'x' || text.charAt(i) == 'X'))
+		{
+			radix = 16;
+			i++;
+		}
+		if (i == end || end - i > 7)
+			return -1;
+		int cp = 0;
+		for (; i < end; i++)
+		{
+			int d = Character.digit(text.charAt(i), radix);
+			if (d < 0)
+				return -1;
+			cp = cp*radix + d;
+		}
+		if (cp == 0 || cp > Character.MAX_CODE_POINT || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE))
+			return -1;
+		return cp;
+	}
+}
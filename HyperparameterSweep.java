@@ -0,0 +1,248 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: 
+ * NaiveBayesLearner.java, CorpusStatistics.java, CrossValidator.java, DocumentBuilder.java,
+ * Document.java, EvaluationReport.java, LearnerOptions.java
+ * 
+ * DESCRIPTION: Evaluates many (feature selection method, # of features, smoothing alpha) 
+ * settings over the same data. The corpus is cleaned, stemmed and counted once per training 
+ * split (a holdout split, or each fold of a cross-validation); every (method, # of features) 
+ * pair then recomputes feature selection once per split from those shared statistics, and 
+ * each smoothing constant only recomputes the probability tables of that learner. The pairs 
+ * are evaluated in parallel and each setting gets an EvaluationReport.
+ **********************************************************************************************/
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class HyperparameterSweep {
+	
+	//one combination of training settings
+	public static class Setting {
+		private final char method;
+		private final int features;
+		private final double alpha;
+		
+		public Setting(char method, int features, double alpha)
+		{
+			if (method != 'M' && method != 'C')
+				throw new IllegalArgumentException("Invalid Feature Selection Input!");
+			this.method = method;
+			this.features = features;
+			this.alpha = alpha;
+		}
+		
+		public char method()    { return method; }
+		public int features()   { return features; }
+		public double alpha()   { return alpha; }
+		
+		public String toString()
+		{
+			return method + ", " + features + ", " + alpha;
+		}
+	}
+	
+	//a setting with its evaluation
+	public static class Result {
+		private final Setting setting;
+		private final EvaluationReport report;
+		
+		Result(Setting setting, EvaluationReport report)
+		{
+			this.setting = setting;
+			this.report = report;
+		}
+		
+		public Setting setting()          { return setting; }
+		public EvaluationReport report()  { return report; }
+	}
+	
+	private final List<CorpusStatistics> trainStats;   //counted statistics of each training split
+	private final List<List<Document>> testDocs;       //evaluation documents of each split
+	private final List<String> categories;             //every label seen, for the reports
+	private final LearnerOptions options;              //settings shared by all runs (n-grams etc.)
+	
+	//a single split: train on one set of documents, evaluate on another
+	public HyperparameterSweep(List<Document> train, List<Document> test, LearnerOptions options)
+	{
+		this.options = options;
+		trainStats = new ArrayList<CorpusStatistics>();
+		testDocs = new ArrayList<List<Document>>();
+		trainStats.add(new CorpusStatistics(train));
+		testDocs.add(test);
+		categories = labels(train, test);
+	}
+	
+	//every fold of a cross-validation; each fold's training split is counted once
+	public HyperparameterSweep(CrossValidator cv, LearnerOptions options)
+	{
+		this.options = options;
+		trainStats = new ArrayList<CorpusStatistics>();
+		testDocs = new ArrayList<List<Document>>();
+		for (int f = 0; f < cv.numFolds(); f++)
+		{
+			CrossValidator.Fold fold = cv.fold(f);
+			trainStats.add(new CorpusStatistics(fold.train()));
+			testDocs.add(fold.test());
+		}
+		categories = cv.categories();
+	}
+	
+	//every combination of the given methods, feature counts and smoothing constants
+	public static List<Setting> grid(char[] methods, int[] features, double[] alphas)
+	{
+		List<Setting> settings = new ArrayList<Setting>();
+		for (char m: methods)
+			for (int k: features)
+				for (double a: alphas)
+					settings.add(new Setting(m, k, a));
+		return settings;
+	}
+	
+	//evaluates every setting on up to threads threads; results are in the order of settings.
+	//Settings that differ only in alpha form one task, which trains once per split and then
+	//only recomputes the probability tables for each alpha
+	public List<Result> run(List<Setting> settings, int threads) throws InterruptedException
+	{
+		//indices into settings, grouped by (method, # of features) in order of first appearance
+		LinkedHashMap<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+		for (int i = 0; i < settings.size(); i++)
+		{
+			String key = settings.get(i).method() + ":" + settings.get(i).features();
+			List<Integer> group = groups.get(key);
+			if (group == null)
+			{
+				group = new ArrayList<Integer>();
+				groups.put(key, group);
+			}
+			group.add(i);
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, groups.size())));
+		try
+		{
+			List<Future<List<EvaluationReport>>> reports = new ArrayList<Future<List<EvaluationReport>>>();
+			for (List<Integer> group: groups.values())
+			{
+				final List<Setting> members = new ArrayList<Setting>();
+				for (int i: group)
+					members.add(settings.get(i));
+				reports.add(pool.submit(new Callable<List<EvaluationReport>>() {
+					public List<EvaluationReport> call() {
+						return evaluate(members);
+					}
+				}));
+			}
+			
+			EvaluationReport[] bySetting = new EvaluationReport[settings.size()];
+			int g = 0;
+			for (List<Integer> group: groups.values())
+			{
+				List<EvaluationReport> r = reports.get(g++).get();
+				for (int j = 0; j < group.size(); j++)
+					bySetting[group.get(j)] = r.get(j);
+			}
+			List<Result> results = new ArrayList<Result>();
+			for (int i = 0; i < settings.size(); i++)
+				results.add(new Result(settings.get(i), bySetting[i]));
+			return results;
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("Sweep setting failed", e.getCause());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	
+	//trains one learner per split from the shared statistics and merges their evaluations
+	public EvaluationReport evaluate(Setting s)
+	{
+		List<Setting> one = new ArrayList<Setting>();
+		one.add(s);
+		return evaluate(one).get(0);
+	}
+	
+	//evaluates settings that share a selection method and # of features: one learner is trained 
+	//per split, and setSmoothing switches it to each setting's alpha in turn (feature selection 
+	//does not depend on alpha). The reports are in the order of group
+	private List<EvaluationReport> evaluate(List<Setting> group)
+	{
+		Setting first = group.get(0);
+		LearnerOptions o = options.copy().smoothing(first.alpha());
+		List<EvaluationReport> totals = new ArrayList<EvaluationReport>();
+		for (int j = 0; j < group.size(); j++)
+			totals.add(new EvaluationReport(categories));
+		for (int i = 0; i < trainStats.size(); i++)
+		{
+			NaiveBayesLearner learner = new NaiveBayesLearner(trainStats.get(i), first.method(), first.features(), o);
+			for (int j = 0; j < group.size(); j++)
+			{
+				if (group.get(j).alpha() != learner.getSmoothing())
+					learner.setSmoothing(group.get(j).alpha());
+				EvaluationReport report = new EvaluationReport(categories);
+				for (Document d: testDocs.get(i))
+					report.record(d.labels(), learner.classify(d));
+				totals.get(j).add(report);
+			}
+		}
+		return totals;
+	}
+	
+	//the setting with the highest accuracy (the first one on ties)
+	public static Result best(List<Result> results)
+	{
+		Result best = null;
+		for (Result r: results)
+		{
+			if (best == null || r.report().accuracy() > best.report().accuracy())
+				best = r;
+		}
+		return best;
+	}
+	
+	//all labels of both document lists, so all reports share one confusion matrix layout
+	private static List<String> labels(List<Document> a, List<Document> b)
+	{
+		List<String> cats = new ArrayList<String>();
+		for (Document d: a)
+			for (String l: d.labels())
+				cats.add(l);
+		for (Document d: b)
+			for (String l: d.labels())
+				cats.add(l);
+		return cats;
+	}
+	
+	//usage: java HyperparameterSweep file dataType k threads
+	//sweeps both selection methods over a few feature counts and smoothing constants with k-fold CV
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String fileName = args[0];
+		char dataType = args[1].charAt(0);
+		int k = Integer.parseInt(args[2]);
+		int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		
+		LearnerOptions options = new LearnerOptions();
+		CrossValidator cv = new CrossValidator(fileName, dataType, options, k, 42);
+		HyperparameterSweep sweep = new HyperparameterSweep(cv, options);
+		List<Result> results = sweep.run(grid(new char[] {'M', 'C'}, new int[] {10, 25, 50, 100}, 
+				new double[] {0.1, 0.5, 1.0}), threads);
+		
+		System.out.println("method, features, alpha, accuracy, microF1, macroF1");
+		for (Result r: results)
+			System.out.println(r.setting() + ", " + r.report().accuracy() + ", " + r.report().microF1() + ", " + r.report().macroF1());
+		System.out.println("Best: " + best(results).setting());
+	}
+}
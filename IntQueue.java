@@ -0,0 +1,144 @@
+package classifier;
+/*************************************************************************
+ *  Compilation:  javac IntQueue.java
+ *
+ *  A queue of primitive ints, implemented using a resizing circular array.
+ *
+ *************************************************************************/
+
+import java.util.NoSuchElementException;
+
+/**
+ *  The <tt>IntQueue</tt> class represents a first-in-first-out (FIFO)
+ *  queue of primitive <tt>int</tt> values. It mirrors {@link Queue}
+ *  (same ring-buffer layout, same <em>clear</em> for reuse) but stores the
+ *  values unboxed, so queues of term or feature indices do not allocate an
+ *  <tt>Integer</tt> per element.
+ *  <p>
+ *  Instead of an <tt>Iterator</tt>, which would box every value, the items
+ *  are visited in FIFO order with {@link #get(int)}:
+ *  <pre>
+ *      for (int i = 0; i &lt; q.size(); i++) use(q.get(i));
+ *  </pre>
+ */
+public class IntQueue {
+    private static final int INIT_CAPACITY = 8;
+
+    private int[] q;             // queue elements
+    private int N;               // number of elements on queue
+    private int first;           // index of first element of queue
+    private int mask;            // q.length - 1, q.length is a power of two
+
+    /**
+     * Initializes an empty queue.
+     */
+    public IntQueue() {
+        this(INIT_CAPACITY);
+    }
+
+    /**
+     * Initializes an empty queue able to hold <tt>capacity</tt> values before resizing.
+     * @param capacity the initial capacity, rounded up to a power of two
+     */
+    public IntQueue(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Negative capacity");
+        q = new int[Queue.powerOfTwo(capacity)];
+        mask = q.length - 1;
+    }
+
+    /**
+     * Is this queue empty?
+     * @return true if this queue is empty; false otherwise
+     */
+    public boolean isEmpty() { return N == 0; }
+
+    /**
+     * Returns the number of values in this queue.
+     * @return the number of values in this queue
+     */
+    public int size() { return N; }
+
+    /**
+     * Returns the value least recently added to this queue.
+     * @return the value least recently added to this queue
+     * @throws java.util.NoSuchElementException if this queue is empty
+     */
+    public int peek() {
+        if (isEmpty()) throw new NoSuchElementException("Queue underflow");
+        return q[first];
+    }
+
+    /**
+     * Returns the <tt>i</tt>th value from the front of this queue without removing it.
+     * @param i the offset from the front, 0 being the least recently added value
+     * @return the value at offset <tt>i</tt>
+     * @throws java.lang.IndexOutOfBoundsException unless 0 &lt;= i &lt; size()
+     */
+    public int get(int i) {
+        if (i < 0 || i >= N) throw new IndexOutOfBoundsException("Index " + i + " out of " + N);
+        return q[(first + i) & mask];
+    }
+
+    /**
+     * Adds the value to this queue.
+     * @param x the value to add
+     */
+    public void enqueue(int x) {
+        if (N == q.length) resize(2*q.length);
+        q[(first + N) & mask] = x;
+        N++;
+    }
+
+    /**
+     * Removes and returns the value on this queue that was least recently added.
+     * @return the value on this queue that was least recently added
+     * @throws java.util.NoSuchElementException if this queue is empty
+     */
+    public int dequeue() {
+        if (isEmpty()) throw new NoSuchElementException("Queue underflow");
+        int x = q[first];
+        first = (first + 1) & mask;
+        N--;
+        return x;
+    }
+
+    /**
+     * Removes all values from this queue, keeping the backing array for reuse.
+     */
+    public void clear() {
+        first = 0;
+        N = 0;
+    }
+
+    /**
+     * Returns the values of this queue in FIFO order as a new array.
+     * @return an array of length size() holding the values in FIFO order
+     */
+    public int[] toArray() {
+        int[] a = new int[N];
+        for (int i = 0; i < N; i++)
+            a[i] = q[(first + i) & mask];
+        return a;
+    }
+
+    // move the values to a new array of the given power-of-two capacity
+    private void resize(int capacity) {
+        int[] temp = new int[capacity];
+        for (int i = 0; i < N; i++)
+            temp[i] = q[(first + i) & mask];
+        q = temp;
+        mask = capacity - 1;
+        first = 0;
+    }
+
+    /**
+     * Returns a string representation of this queue.
+     * @return the sequence of values in FIFO order, separated by spaces
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < N; i++)
+            s.append(q[(first + i) & mask]).append(' ');
+        return s.toString();
+    }
+}
@@ -0,0 +1,179 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: RedBlackBST.java
+ * 
+ * DESCRIPTION: Per-label evaluation counts for (multi-label) classification. For every 
+ * document the set of predicted labels is compared with the set of actual labels, and each 
+ * label keeps its true positives, false positives and false negatives, from which precision,
+ * recall and F1 are computed per label and micro/macro averaged.
+ **********************************************************************************************/
+
+import java.util.Collection;
+
+public class LabelStats {
+	//key=label and value={true positives, false positives, false negatives}
+	private RedBlackBST<String, int[]> counts;
+	private int numDocs;
+	private int exactMatches;    //documents whose predicted label set equals the actual set
+	private static final int[] NONE = new int[3];
+	
+	public LabelStats()
+	{
+		counts = new RedBlackBST<String, int[]>();
+	}
+	
+	//records the predicted labels of one document against its actual labels
+	public void record(String[] actual, Collection<String> predicted)
+	{
+		int hits = 0;
+		for (String p: predicted)
+		{
+			if (contains(actual, p))
+			{
+				get(p)[0]++;
+				hits++;
+			}
+			else
+				get(p)[1]++;
+		}
+		for (String a: actual)
+		{
+			if (!predicted.contains(a))
+				get(a)[2]++;
+		}
+		if (hits == actual.length && hits == predicted.size())
+			exactMatches++;
+		numDocs++;
+	}
+	
+	//adds all counts of another set of statistics into this one
+	public void add(LabelStats other)
+	{
+		for (String l: other.counts.keys())
+		{
+			int[] o = other.counts.get(l);
+			int[] c = get(l);
+			for (int i = 0; i < c.length; i++)
+				c[i] += o[i];
+		}
+		numDocs += other.numDocs;
+		exactMatches += other.exactMatches;
+	}
+	
+	public int numDocs()
+	{
+		return numDocs;
+	}
+	
+	//all labels seen either as actual or predicted labels, in sorted order
+	public Iterable<String> labels()
+	{
+		return counts.keys();
+	}
+	
+	public int truePositives(String label)  { return find(label)[0]; }
+	public int falsePositives(String label) { return find(label)[1]; }
+	public int falseNegatives(String label) { return find(label)[2]; }
+	
+	//precision of a label: tp / (tp + fp), 0 if the label was never predicted
+	public double precision(String label)
+	{
+		int[] c = find(label);
+		return ratio(c[0], c[0] + c[1]);
+	}
+	
+	//recall of a label: tp / (tp + fn), 0 if the label never occurred
+	public double recall(String label)
+	{
+		int[] c = find(label);
+		return ratio(c[0], c[0] + c[2]);
+	}
+	
+	public double f1(String label)
+	{
+		int[] c = find(label);
+		return ratio(2*c[0], 2*c[0] + c[1] + c[2]);
+	}
+	
+	//F1 from the summed counts of all labels
+	public double microF1()
+	{
+		long tp = 0, fp = 0, fn = 0;
+		for (String l: counts.keys())
+		{
+			int[] c = counts.get(l);
+			tp += c[0];
+			fp += c[1];
+			fn += c[2];
+		}
+		return ratio(2*tp, 2*tp + fp + fn);
+	}
+	
+	//unweighted mean of the per-label F1 scores
+	public double macroF1()
+	{
+		if (counts.isEmpty())
+			return 0;
+		double sum = 0;
+		for (String l: counts.keys())
+			sum += f1(l);
+		return sum/counts.size();
+	}
+	
+	//fraction of documents whose predicted label set was exactly right
+	public double subsetAccuracy()
+	{
+		return ratio(exactMatches, numDocs);
+	}
+	
+	public void print()
+	{
+		System.out.println();
+		System.out.println("-------Per-Label Statistics------");
+		for (String l: counts.keys())
+		{
+			int[] c = counts.get(l);
+			System.out.println(l + ": precision " + precision(l) + "  recall " + recall(l) 
+					+ "  (tp " + c[0] + ", fp " + c[1] + ", fn " + c[2] + ")");
+		}
+		System.out.println("Micro F1: " + microF1());
+		System.out.println("Macro F1: " + macroF1());
+		System.out.println("Exact label-set matches: " + exactMatches + " out of " + numDocs + " documents.");
+	}
+	
+	//counts of a label for reading, zeros for a label never seen; does not add a row
+	private int[] find(String label)
+	{
+		int[] c = counts.get(label);
+		return (c == null) ? NONE : c;
+	}
+	
+	//counts of a label for recording, adding an empty row the first time it is seen
+	private int[] get(String label)
+	{
+		int[] c = counts.get(label);
+		if (c == null)
+		{
+			c = new int[3];
+			counts.put(label, c);
+		}
+		return c;
+	}
+	
+	private static boolean contains(String[] a, String s)
+	{
+		for (String x: a)
+		{
+			if (x.equals(s))
+				return true;
+		}
+		return false;
+	}
+	
+	private static double ratio(long num, long den)
+	{
+		return (den == 0) ? 0 : (double) num/den;
+	}
+}
@@ -0,0 +1,127 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: Metrics.java
+ *
+ * DESCRIPTION: A thread-safe latency histogram with log-linear buckets in the style of
+ * HdrHistogram: every power of two of nanoseconds is split into 32 equal sub-buckets, so any
+ * recorded value is known to within about 3% while the whole range from 1ns to over an hour
+ * fits in about 1300 counters. Recording is a few bit operations and one atomic increment,
+ * with no allocation; percentiles are computed from a snapshot of the counts.
+ **********************************************************************************************/
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+	private static final int SUB_BITS = 5;                 //2^5 = 32 sub-buckets per power of two
+	private static final int SUB = 1 << SUB_BITS;
+	private static final int MAX_BIT = 42;                 //values are capped at 2^43 - 1 ns (~2.4 hours)
+	private static final long MAX_VALUE = (1L << (MAX_BIT + 1)) - 1;
+	private static final int BUCKETS = (MAX_BIT - SUB_BITS + 2)*SUB;
+
+	private final String name;
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public LatencyHistogram(String name)
+	{
+		this.name = name;
+	}
+
+	public String name()
+	{
+		return name;
+	}
+
+	//records one value in nanoseconds (negative values count as 0)
+	public void record(long nanos)
+	{
+		long v = Math.min(Math.max(nanos, 0), MAX_VALUE);
+		counts.incrementAndGet(bucket(v));
+		count.incrementAndGet();
+		sum.addAndGet(v);
+		long m = max.get();
+		while (v > m && !max.compareAndSet(m, v))
+			m = max.get();
+	}
+
+	//records the time since start (a value from Metrics.start()) if metrics are enabled
+	public void recordSince(long start)
+	{
+		if (Metrics.ENABLED)
+			record(System.nanoTime() - start);
+	}
+
+	public long count()      { return count.get(); }
+	public long max()        { return max.get(); }
+
+	public double mean()
+	{
+		long n = count.get();
+		return (n == 0) ? 0 : (double) sum.get()/n;
+	}
+
+	//the value (in ns) below which the fraction p of recorded values fall, 0 if nothing is recorded
+	public long percentile(double p)
+	{
+		if (p < 0 || p > 1)
+			throw new IllegalArgumentException("Percentile must be between 0 and 1");
+		long[] snapshot = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			snapshot[i] = counts.get(i);
+			n += snapshot[i];
+		}
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(p*n));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(middle(i), max.get());
+		}
+		return max.get();
+	}
+
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	//values below 2*SUB get a bucket each; above that, the top SUB_BITS+1 bits select the bucket
+	static int bucket(long v)
+	{
+		if (v < 2*SUB)
+			return (int) v;
+		int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+		return (shift + 1)*SUB + (int) ((v >>> shift) - SUB);
+	}
+
+	//a representative value of bucket i (the middle of its range)
+	static long middle(int i)
+	{
+		if (i < 2*SUB)
+			return i;
+		int shift = i/SUB - 1;
+		long lower = ((long) (i % SUB) + SUB) << shift;
+		return lower + ((1L << shift) >>> 1);
+	}
+
+	//one summary line, in microseconds
+	public String toString()
+	{
+		return String.format("%-24s count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+				name, count(), mean()/1e3, percentile(0.5)/1e3, percentile(0.9)/1e3, percentile(0.99)/1e3, max()/1e3);
+	}
+}
@@ -0,0 +1,174 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: TextPipeline.java
+ * 
+ * DESCRIPTION: Optional training settings for NaiveBayesLearner beyond the data type, feature
+ * selection method and feature count given to its constructor. Setters return the options
+ * object so they can be chained, e.g.
+ *     new LearnerOptions().ngrams(2).minNgramCount(3)
+ * The defaults reproduce the plain unigram learner.
+ **********************************************************************************************/
+
+public class LearnerOptions {
+	
+	//how documents are scored against the categories
+	public enum Scoring {
+		MULTINOMIAL,   //log prior + sum of log P(t|c) (standard multinomial Naive Bayes)
+		COMPLEMENT     //weight-normalized Complement Naive Bayes, estimated from all other categories
+	}
+	
+	//how the selected vocabulary is indexed for classification
+	public enum Lookup {
+		PERFECT_HASH,  //minimal perfect hash with fingerprints (MinimalPerfectHash)
+		TRIE           //double-array trie, rejecting a token at its first unknown char (DoubleArrayTrie)
+	}
+	
+	private int ngramOrder = 1;          //longest n-gram to use as a feature (1 = unigrams only)
+	private int minNgramCount = 2;       //occurrences before an n-gram becomes a candidate feature
+	private int sketchWidth = 1 << 20;   //counters per row of the n-gram count-min sketch
+	private int sketchDepth = 4;         //rows of the n-gram count-min sketch
+	private double alpha = 1.0;          //additive smoothing of the likelihoods (1 = Laplace)
+	private Scoring scoring = Scoring.MULTINOMIAL;
+	private boolean tfidf = false;       //weight document terms by TF-IDF and length-normalize them
+	private long memoryBudget = 0;       //bytes of training counts kept in memory before spilling (0 = no limit)
+	private String cacheDirectory = null; //where tokenized corpora are cached (null = no cache)
+	private boolean offHeap = false;     //keep the model's count and weight tables outside the heap
+	private Lookup lookup = Lookup.PERFECT_HASH;
+	private TextPipeline pipeline = TextPipeline.REUTERS;   //cleaning and stemming of document text
+	
+	//use n-grams of up to n stemmed tokens as features alongside the single tokens (1 to 3)
+	public LearnerOptions ngrams(int n)
+	{
+		if (n < 1 || n > 3)
+			throw new IllegalArgumentException("N-gram order must be between 1 and 3");
+		ngramOrder = n;
+		return this;
+	}
+	
+	//an n-gram is only counted once it has been seen this many times in the training corpus
+	public LearnerOptions minNgramCount(int count)
+	{
+		if (count < 1)
+			throw new IllegalArgumentException("Minimum n-gram count must be positive");
+		minNgramCount = count;
+		return this;
+	}
+	
+	//size of the count-min sketch used to screen n-gram candidates (width is rounded up to a power of two)
+	public LearnerOptions ngramSketch(int width, int depth)
+	{
+		if (width < 2 || depth < 1)
+			throw new IllegalArgumentException("Invalid sketch size");
+		sketchWidth = width;
+		sketchDepth = depth;
+		return this;
+	}
+	
+	//additive (Lidstone) smoothing constant for the likelihood estimates; 1 is Laplace add-one
+	public LearnerOptions smoothing(double alpha)
+	{
+		if (!(alpha > 0))
+			throw new IllegalArgumentException("Smoothing constant must be positive");
+		this.alpha = alpha;
+		return this;
+	}
+	
+	//scoring engine used by classify (the default is multinomial Naive Bayes)
+	public LearnerOptions scoring(Scoring scoring)
+	{
+		if (scoring == null)
+			throw new IllegalArgumentException("Scoring mode must not be null");
+		this.scoring = scoring;
+		return this;
+	}
+	
+	//weight each term of a document being classified by log(1 + count) * idf instead of its raw
+	//count, then scale the document's weights to unit length
+	public LearnerOptions tfidf(boolean tfidf)
+	{
+		this.tfidf = tfidf;
+		return this;
+	}
+	
+	//count the training corpus within about this many bytes of heap, spilling sorted runs of the
+	//counts to temporary files when the budget is exceeded (0 keeps all documents in memory)
+	public LearnerOptions memoryBudget(long bytes)
+	{
+		if (bytes < 0)
+			throw new IllegalArgumentException("Memory budget must not be negative");
+		memoryBudget = bytes;
+		return this;
+	}
+	
+	//cache cleaned and stemmed corpora in this directory, so later runs over the same file skip
+	//the cleaning (null turns the cache off)
+	public LearnerOptions cacheDirectory(String dir)
+	{
+		cacheDirectory = dir;
+		return this;
+	}
+	
+	//keep the trained count and weight tables in native memory outside the Java heap. Each table
+	//is one NIO direct or mapped buffer, and a buffer holds at most 2^31-1 bytes: about 268 million
+	//weights or 536 million counts, an eighth (a quarter) of what a heap array can hold. Larger
+	//tables fail with an IllegalArgumentException. JDK 17's memory segments have no such limit but
+	//are still an incubator module (jdk.incubator.foreign, JEP 412), so they are not used
+	public LearnerOptions offHeap(boolean offHeap)
+	{
+		this.offHeap = offHeap;
+		return this;
+	}
+	
+	//index used to find the selected vocabulary row of each token being classified
+	public LearnerOptions lookup(Lookup lookup)
+	{
+		if (lookup == null)
+			throw new IllegalArgumentException("Lookup must not be null");
+		this.lookup = lookup;
+		return this;
+	}
+	
+	//how document text is cleaned and stemmed, for training and for classification (e.g.
+	//TextPipeline.TICKETS); a saved model keeps the pipeline it was trained with
+	public LearnerOptions pipeline(TextPipeline pipeline)
+	{
+		if (pipeline == null)
+			throw new IllegalArgumentException("Text pipeline must not be null");
+		this.pipeline = pipeline;
+		return this;
+	}
+	
+	//a copy of these options, so one setting can be varied without affecting other users
+	public LearnerOptions copy()
+	{
+		LearnerOptions o = new LearnerOptions();
+		o.ngramOrder = ngramOrder;
+		o.minNgramCount = minNgramCount;
+		o.sketchWidth = sketchWidth;
+		o.sketchDepth = sketchDepth;
+		o.alpha = alpha;
+		o.scoring = scoring;
+		o.tfidf = tfidf;
+		o.memoryBudget = memoryBudget;
+		o.cacheDirectory = cacheDirectory;
+		o.offHeap = offHeap;
+		o.lookup = lookup;
+		o.pipeline = pipeline;
+		return o;
+	}
+	
+	public int getNgramOrder()     { return ngramOrder; }
+	public int getMinNgramCount()  { return minNgramCount; }
+	public int getSketchWidth()    { return sketchWidth; }
+	public int getSketchDepth()    { return sketchDepth; }
+	public double getSmoothing()   { return alpha; }
+	public Scoring getScoring()    { return scoring; }
+	public boolean isTfidf()       { return tfidf; }
+	public long getMemoryBudget()  { return memoryBudget; }
+	public String getCacheDirectory() { return cacheDirectory; }
+	public boolean isOffHeap()     { return offHeap; }
+	public Lookup getLookup()      { return lookup; }
+	public TextPipeline getPipeline() { return pipeline; }
+}
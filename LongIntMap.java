@@ -0,0 +1,134 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: Queue.java
+ * 
+ * DESCRIPTION: Open-addressing hash map from primitive long keys to primitive int values
+ * (linear probing, load factor at most 1/2). Used for counting packed n-gram keys without 
+ * boxing a Long and an Integer per entry.
+ **********************************************************************************************/
+
+public class LongIntMap {
+	private long[] keys;
+	private int[] vals;
+	private boolean[] used;
+	private int mask;        //keys.length - 1, keys.length is a power of two
+	private int size;
+	
+	public LongIntMap()
+	{
+		this(16);
+	}
+	
+	public LongIntMap(int expectedSize)
+	{
+		allocate(Queue.powerOfTwo(Math.max(4, 2*expectedSize)));
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public boolean containsKey(long key)
+	{
+		return used[slot(key)];
+	}
+	
+	//value associated with the key, or missing if there is none
+	public int get(long key, int missing)
+	{
+		int s = slot(key);
+		return used[s] ? vals[s] : missing;
+	}
+	
+	public void put(long key, int val)
+	{
+		int s = slot(key);
+		vals[s] = val;
+		if (!used[s])
+			insertAt(s, key);
+	}
+	
+	//adds delta to the value of the key (treating a missing key as 0) and returns the new value
+	public int add(long key, int delta)
+	{
+		int s = slot(key);
+		if (used[s])
+			return vals[s] += delta;
+		vals[s] = delta;
+		insertAt(s, key);
+		return delta;
+	}
+	
+	//all keys currently in the map, in no particular order
+	public long[] keys()
+	{
+		long[] k = new long[size];
+		int n = 0;
+		for (int s = 0; s < keys.length; s++)
+		{
+			if (used[s]) k[n++] = keys[s];
+		}
+		return k;
+	}
+	
+	public void clear()
+	{
+		java.util.Arrays.fill(used, false);
+		size = 0;
+	}
+	
+	//slot holding the key, or the empty slot where it would be inserted
+	private int slot(long key)
+	{
+		int s = mix(key) & mask;
+		while (used[s] && keys[s] != key)
+			s = (s + 1) & mask;
+		return s;
+	}
+	
+	private void insertAt(int s, long key)
+	{
+		keys[s] = key;
+		used[s] = true;
+		size++;
+		if (2*size > keys.length)
+		{
+			long[] oldKeys = keys;
+			int[] oldVals = vals;
+			boolean[] oldUsed = used;
+			allocate(2*oldKeys.length);
+			for (int i = 0; i < oldKeys.length; i++)
+			{
+				if (oldUsed[i])
+				{
+					int t = slot(oldKeys[i]);
+					keys[t] = oldKeys[i];
+					vals[t] = oldVals[i];
+					used[t] = true;
+				}
+			}
+		}
+	}
+	
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		vals = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+	
+	//64-bit finalizer of MurmurHash3, folded to 32 bits
+	static int mix(long k)
+	{
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return (int) k;
+	}
+}
@@ -0,0 +1,143 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: LatencyHistogram.java, MetricsMBean.java
+ *
+ * DESCRIPTION: Process-wide metrics of the learner: latency histograms of the classification
+ * stages (cleaning and stemming by the text pipeline, feature lookup, scoring) and of the training phases
+ * (parse, computeTokenData, FeatureSelect, computeProbabilities), and counters of documents,
+ * tokens and out-of-vocabulary tokens. Metrics are off unless the JVM is started with
+ * -Dclassifier.metrics=true. ENABLED is a static final constant, so when it is false the JIT
+ * removes the instrumentation entirely. When enabled the metrics are registered with the
+ * platform MBean server as classifier:type=Metrics, and dump() gives the same as text.
+ *
+ * Usage in a hot path:
+ *     long t0 = Metrics.start();
+ *     ...
+ *     Metrics.SCORING.recordSince(t0);
+ **********************************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class Metrics implements MetricsMBean {
+	public static final boolean ENABLED = Boolean.getBoolean("classifier.metrics");
+
+	//classification stages
+	public static final LatencyHistogram CLEAN = new LatencyHistogram("clean");
+	public static final LatencyHistogram FEATURE_LOOKUP = new LatencyHistogram("featureLookup");
+	public static final LatencyHistogram SCORING = new LatencyHistogram("scoring");
+	public static final LatencyHistogram CLASSIFY = new LatencyHistogram("classify");
+
+	//training phases
+	public static final LatencyHistogram PARSE = new LatencyHistogram("parse");
+	public static final LatencyHistogram COMPUTE_TOKEN_DATA = new LatencyHistogram("computeTokenData");
+	public static final LatencyHistogram FEATURE_SELECT = new LatencyHistogram("FeatureSelect");
+	public static final LatencyHistogram COMPUTE_PROBABILITIES = new LatencyHistogram("computeProbabilities");
+
+	private static final LatencyHistogram[] ALL = { CLEAN, FEATURE_LOOKUP, SCORING, CLASSIFY,
+			PARSE, COMPUTE_TOKEN_DATA, FEATURE_SELECT, COMPUTE_PROBABILITIES };
+
+	//documents classified, tokens seen while classifying, and those not in the selected vocabulary
+	private static final LongAdder documents = new LongAdder();
+	private static final LongAdder tokens = new LongAdder();
+	private static final LongAdder oovTokens = new LongAdder();
+
+	static {
+		if (ENABLED)
+		{
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), new ObjectName("classifier:type=Metrics"));
+			}
+			catch (JMException e)
+			{
+				System.err.println("Metrics not registered with JMX: " + e);
+			}
+		}
+	}
+
+	private Metrics() { }
+
+	//a start time for LatencyHistogram.recordSince, or 0 without a clock read if metrics are off
+	public static long start()
+	{
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	//counts one classified document with the given # of tokens, of which oov were not in the vocabulary
+	public static void countDocument(int docTokens, int oov)
+	{
+		if (ENABLED)
+		{
+			documents.increment();
+			tokens.add(docTokens);
+			oovTokens.add(oov);
+		}
+	}
+
+	public static LatencyHistogram histogram(String stage)
+	{
+		for (LatencyHistogram h: ALL)
+		{
+			if (h.name().equals(stage))
+				return h;
+		}
+		throw new IllegalArgumentException("No such stage: " + stage);
+	}
+
+	//all counters and histograms as text, one per line
+	public static String dump()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("metrics enabled=").append(ENABLED).append('\n');
+		sb.append("documents=").append(documents.sum()).append(" tokens=").append(tokens.sum())
+			.append(" oovTokens=").append(oovTokens.sum())
+			.append(String.format(" oovRate=%.4f", oovRate())).append('\n');
+		for (LatencyHistogram h: ALL)
+			sb.append(h).append('\n');
+		return sb.toString();
+	}
+
+	public static void resetAll()
+	{
+		documents.reset();
+		tokens.reset();
+		oovTokens.reset();
+		for (LatencyHistogram h: ALL)
+			h.reset();
+	}
+
+	private static double oovRate()
+	{
+		long n = tokens.sum();
+		return (n == 0) ? 0 : (double) oovTokens.sum()/n;
+	}
+
+/*******************************************************************************************
+ * JMX view
+ * ******************************************************************************************/
+	public long getDocuments()   { return documents.sum(); }
+	public long getTokens()      { return tokens.sum(); }
+	public long getOovTokens()   { return oovTokens.sum(); }
+	public double getOovRate()   { return oovRate(); }
+	public String getDump()      { return dump(); }
+	public void reset()          { resetAll(); }
+
+	public String[] getStages()
+	{
+		String[] names = new String[ALL.length];
+		for (int i = 0; i < ALL.length; i++)
+			names[i] = ALL[i].name();
+		return names;
+	}
+
+	public double percentileMicros(String stage, double p)
+	{
+		return histogram(stage).percentile(p)/1e3;
+	}
+}
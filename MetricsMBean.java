@@ -0,0 +1,27 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: none
+ *
+ * DESCRIPTION: JMX management interface of the classifier metrics (registered by Metrics as
+ * classifier:type=Metrics when metrics are enabled).
+ **********************************************************************************************/
+
+public interface MetricsMBean {
+	long getDocuments();
+	long getTokens();
+	long getOovTokens();
+	double getOovRate();
+
+	//names of the timed stages and training phases
+	String[] getStages();
+
+	//latency percentile (p between 0 and 1) of a stage, in microseconds
+	double percentileMicros(String stage, double p);
+
+	//one line per counter and timed stage
+	String getDump();
+
+	void reset();
+}
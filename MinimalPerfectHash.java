@@ -0,0 +1,360 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: TermLookup.java
+ * 
+ * DESCRIPTION: Term lookup for a fixed set of n terms, built once with the CHD ("compress, 
+ * hash and displace") method. Each term is hashed to 64 bits, which pick one of n/LAMBDA 
+ * buckets; buckets are placed largest first, each trying displacements d = 0, 1, 2, ... until 
+ * all of its terms land in distinct free slots of [0, n). Storing only the displacement of each
+ * bucket gives a function mapping every term to its own slot. The slot holds a 32-bit 
+ * fingerprint of the term, so all but about 1 in 4 billion terms outside the set are rejected,
+ * next to the term's id (its row in the model, which is why it cannot simply be the slot). All of
+ * it is bit-packed: displacements in as many bits as the largest needs (usually 8-12, so 2-3 bits
+ * per term), ids in ceil(log2 n) bits, so a term costs about 2.5 + 32 + log2 n bits in all 
+ * (e.g. 51 bits for 50000 terms; see bitsPerTerm). A lookup is one pass over the chars and two 
+ * packed reads; no characters of the terms are kept.
+ **********************************************************************************************/
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MinimalPerfectHash implements TermLookup {
+	private static final int LAMBDA = 5;           //average # of terms per bucket
+	private static final int MAX_SEEDS = 100;
+	private static final int FINGERPRINT_BITS = 32;   //of every lookup built here
+	
+	private final int seed;
+	private final int n;                  //number of terms
+	private final int buckets;
+	private final int displacementBits;   //bits per packed displacement
+	private final long[] displacements;   //bucket b -> displacement of its terms, at bit b*displacementBits
+	private final int fingerprintBits;    //FINGERPRINT_BITS, or 16 for a lookup read from a version 5 model
+	private final int idBits;             //bits per packed id
+	private final long[] entries;         //slot s -> fingerprint << idBits | id of its term, at bit s*(fingerprintBits + idBits)
+	
+	//packs the displacement of each bucket and the fingerprint (its low fingerprintBits bits) and 
+	//id of the term in each slot
+	private MinimalPerfectHash(int seed, int[] displacement, int fingerprintBits, int[] fingerprint, int[] id)
+	{
+		this.seed = seed;
+		this.n = id.length;
+		this.buckets = displacement.length;
+		int maxD = 0;
+		for (int d: displacement)
+			maxD = Math.max(maxD, d);
+		displacementBits = bitsFor(maxD);
+		displacements = new long[words((long) buckets*displacementBits)];
+		for (int b = 0; b < buckets; b++)
+			write(displacements, (long) b*displacementBits, displacementBits, displacement[b]);
+		this.fingerprintBits = fingerprintBits;
+		idBits = bitsFor(n - 1);
+		int entryBits = fingerprintBits + idBits;
+		entries = new long[words((long) n*entryBits)];
+		for (int s = 0; s < n; s++)
+			write(entries, (long) s*entryBits, entryBits, ((fingerprint[s] & 0xFFFFFFFFL) << idBits) | id[s]);
+	}
+	
+	//builds the lookup for distinct terms; the i-th term in iteration order gets id i
+	public static MinimalPerfectHash build(Iterable<String> terms)
+	{
+		List<char[]> keys = new ArrayList<char[]>();
+		for (String term: terms)
+			keys.add(term.toCharArray());
+		for (int seed = 0; seed < MAX_SEEDS; seed++)
+		{
+			MinimalPerfectHash h = tryBuild(keys, seed);
+			if (h != null)
+				return h;
+		}
+		throw new IllegalStateException("No perfect hash found for " + keys.size() + " terms");
+	}
+	
+/********************************************************************************************
+ * Lookup
+ * ******************************************************************************************/
+	public int size()
+	{
+		return n;
+	}
+	
+	public int get(char[] buf, int off, int len)
+	{
+		if (n == 0)
+			return -1;
+		long z = hash(buf, off, len, seed);
+		int d = (int) read(displacements, (long) bucket(z, buckets)*displacementBits, displacementBits);
+		int entryBits = fingerprintBits + idBits;
+		long e = read(entries, (long) slot(z, d, n)*entryBits, entryBits);
+		return ((int) (e >>> idBits) == fingerprint(z, fingerprintBits)) ? (int) (e & ((1L << idBits) - 1)) : -1;
+	}
+	
+	public int get(String term)
+	{
+		char[] c = term.toCharArray();
+		return get(c, 0, c.length);
+	}
+	
+	//# of bits per term of the whole lookup: displacements, fingerprints and ids
+	public double bitsPerTerm()
+	{
+		return (n == 0) ? 0 : 64.0*(displacements.length + entries.length)/n;
+	}
+	
+/********************************************************************************************
+ * File format: seed, # of terms, # of buckets, bits per displacement, bits per fingerprint, 
+ * then the packed displacements and the packed (fingerprint, id) entries as longs
+ * ******************************************************************************************/
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(seed);
+		out.writeInt(n);
+		out.writeInt(buckets);
+		out.writeInt(displacementBits);
+		out.writeInt(fingerprintBits);
+		for (long w: displacements)
+			out.writeLong(w);
+		for (long w: entries)
+			out.writeLong(w);
+	}
+	
+	public static MinimalPerfectHash readFrom(DataInputStream in) throws IOException
+	{
+		return readPacked(in, true);
+	}
+	
+	//reads the form of version 5 model files, which had no fingerprint width and 16-bit fingerprints
+	public static MinimalPerfectHash readVersion5(DataInputStream in) throws IOException
+	{
+		return readPacked(in, false);
+	}
+	
+	private static MinimalPerfectHash readPacked(DataInputStream in, boolean hasFingerprintBits) throws IOException
+	{
+		int seed = in.readInt();
+		int n = in.readInt();
+		int buckets = in.readInt();
+		int dBits = in.readInt();
+		int fBits = hasFingerprintBits ? in.readInt() : 16;
+		if (n < 0 || buckets != numBuckets(n) || dBits < 1 || dBits > 32 || fBits < 1 || fBits > 32)
+			throw new IOException("Corrupt perfect hash");
+		long[] packed = new long[words((long) buckets*dBits)];
+		for (int i = 0; i < packed.length; i++)
+			packed[i] = in.readLong();
+		int[] displacement = new int[buckets];
+		for (int b = 0; b < buckets; b++)
+			displacement[b] = (int) read(packed, (long) b*dBits, dBits);
+		
+		int idBits = bitsFor(n - 1);
+		int entryBits = fBits + idBits;
+		packed = new long[words((long) n*entryBits)];
+		for (int i = 0; i < packed.length; i++)
+			packed[i] = in.readLong();
+		int[] fingerprint = new int[n];
+		int[] id = new int[n];
+		for (int s = 0; s < n; s++)
+		{
+			long e = read(packed, (long) s*entryBits, entryBits);
+			fingerprint[s] = (int) (e >>> idBits);
+			id[s] = (int) (e & ((1L << idBits) - 1));
+			if (id[s] >= n)
+				throw new IOException("Corrupt perfect hash");
+		}
+		return new MinimalPerfectHash(seed, displacement, fBits, fingerprint, id);
+	}
+	
+	//reads the unpacked form of model files before version 5 (an int per displacement, and a 
+	//32-bit fingerprint and an int id per slot), which has the fingerprints of this version
+	public static MinimalPerfectHash readUnpacked(DataInputStream in) throws IOException
+	{
+		int seed = in.readInt();
+		int n = in.readInt();
+		int buckets = in.readInt();
+		if (n < 0 || buckets != numBuckets(n))
+			throw new IOException("Corrupt perfect hash");
+		int[] displacement = new int[buckets];
+		for (int b = 0; b < buckets; b++)
+		{
+			displacement[b] = in.readInt();
+			if (displacement[b] < 0)
+				throw new IOException("Corrupt perfect hash");
+		}
+		int[] fingerprint = new int[n];
+		int[] id = new int[n];
+		for (int s = 0; s < n; s++)
+		{
+			fingerprint[s] = in.readInt();
+			id[s] = in.readInt();
+			if (id[s] < 0 || id[s] >= n)
+				throw new IOException("Corrupt perfect hash");
+		}
+		return new MinimalPerfectHash(seed, displacement, FINGERPRINT_BITS, fingerprint, id);
+	}
+	
+/********************************************************************************************
+ * Construction
+ * ******************************************************************************************/
+	//the lookup with the given hash seed, or null if two terms share a 64-bit hash or a bucket 
+	//cannot be placed
+	private static MinimalPerfectHash tryBuild(List<char[]> keys, int seed)
+	{
+		int n = keys.size();
+		int r = numBuckets(n);
+		long[] z = new long[n];
+		for (int i = 0; i < n; i++)
+		{
+			char[] k = keys.get(i);
+			z[i] = hash(k, 0, k.length, seed);
+		}
+		
+		//the terms of each bucket, as consecutive runs of order[]
+		int[] start = new int[r + 1];
+		for (int i = 0; i < n; i++)
+			start[bucket(z[i], r) + 1]++;
+		for (int b = 0; b < r; b++)
+			start[b + 1] += start[b];
+		int[] order = new int[n];
+		int[] fill = Arrays.copyOf(start, r);
+		for (int i = 0; i < n; i++)
+			order[fill[bucket(z[i], r)]++] = i;
+		
+		//largest buckets first: (size << 32 | bucket), sorted descending
+		long[] bySize = new long[r];
+		for (int b = 0; b < r; b++)
+			bySize[b] = ((long) (start[b + 1] - start[b]) << 32) | b;
+		Arrays.sort(bySize);
+		
+		int[] displacement = new int[r];
+		int[] fingerprint = new int[n];
+		int[] id = new int[n];
+		boolean[] taken = new boolean[n];
+		int[] slots = new int[n];
+		for (int j = r - 1; j >= 0; j--)
+		{
+			int b = (int) bySize[j];
+			int size = start[b + 1] - start[b];
+			if (size == 0)
+				break;
+			
+			//two terms of a bucket with the same hash can never be separated
+			for (int p = start[b]; p < start[b + 1]; p++)
+			{
+				for (int q = p + 1; q < start[b + 1]; q++)
+				{
+					if (z[order[p]] == z[order[q]])
+					{
+						if (Arrays.equals(keys.get(order[p]), keys.get(order[q])))
+							throw new IllegalArgumentException("Duplicate term: " + new String(keys.get(order[p])));
+						return null;
+					}
+				}
+			}
+			
+			int d = 0;
+			for (; d < Integer.MAX_VALUE; d++)
+			{
+				boolean ok = true;
+				int k = 0;
+				for (int p = start[b]; p < start[b + 1] && ok; p++)
+				{
+					int s = slot(z[order[p]], d, n);
+					if (taken[s])
+						ok = false;
+					for (int q = 0; q < k && ok; q++)
+						ok = slots[q] != s;
+					slots[k++] = s;
+				}
+				if (ok)
+					break;
+			}
+			if (d == Integer.MAX_VALUE)
+				return null;
+			displacement[b] = d;
+			for (int p = start[b], k = 0; p < start[b + 1]; p++, k++)
+			{
+				taken[slots[k]] = true;
+				fingerprint[slots[k]] = fingerprint(z[order[p]], FINGERPRINT_BITS);
+				id[slots[k]] = order[p];
+			}
+		}
+		return new MinimalPerfectHash(seed, displacement, FINGERPRINT_BITS, fingerprint, id);
+	}
+	
+	private static int numBuckets(int n)
+	{
+		return Math.max(1, (n + LAMBDA - 1)/LAMBDA);
+	}
+	
+/********************************************************************************************
+ * Bit packing: values of up to 63 bits stored back to back in longs, low bits first
+ * ******************************************************************************************/
+	//bits needed to store values 0 .. max (at least 1)
+	private static int bitsFor(int max)
+	{
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+	}
+	
+	private static int words(long bits)
+	{
+		return (int) ((bits + 63) >>> 6);
+	}
+	
+	private static long read(long[] packed, long pos, int width)
+	{
+		int w = (int) (pos >>> 6);
+		int o = (int) (pos & 63);
+		long v = packed[w] >>> o;
+		if (o + width > 64)
+			v |= packed[w + 1] << (64 - o);
+		return v & ((1L << width) - 1);
+	}
+	
+	private static void write(long[] packed, long pos, int width, long v)
+	{
+		int w = (int) (pos >>> 6);
+		int o = (int) (pos & 63);
+		packed[w] |= v << o;
+		if (o + width > 64)
+			packed[w + 1] |= v >>> (64 - o);
+	}
+	
+	//SplitMix64 finalizer, spreading a hash over 64 bits
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	//64-bit FNV-1a over the chars of buf[off, off+len), starting from the seed, then mixed
+	private static long hash(char[] buf, int off, int len, int seed)
+	{
+		long h = 0xcbf29ce484222325L ^ seed;
+		for (int i = off; i < off + len; i++)
+			h = (h ^ buf[i])*0x100000001b3L;
+		return mix(h);
+	}
+	
+	//the bucket, slot and fingerprint of a term are taken from independently mixed forms of its hash
+	private static int bucket(long z, int r)
+	{
+		return (int) ((z >>> 1) % r);
+	}
+	
+	//slot of a term in a bucket with displacement d
+	private static int slot(long z, int d, int n)
+	{
+		return (int) ((mix(z + (d + 1)*0x9E3779B97F4A7C15L) >>> 1) % n);
+	}
+	
+	//the top bits bits of a mixed form of the hash (a 32-bit one may be negative as an int)
+	private static int fingerprint(long z, int bits)
+	{
+		return (int) (mix(z ^ 0xD6E8FEB86659FD93L) >>> (64 - bits));
+	}
+}
@@ -0,0 +1,132 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES:
+ * CorpusStatistics.java, CorpusReader.java, DocumentBuilder.java, DocumentHandler.java,
+ * SpillingCounter.java, NaiveBayesLearner.java, LearnerOptions.java
+ *
+ * DESCRIPTION: Trains one model from a corpus counted in shards by separate processes (or
+ * machines). Each process counts the documents of its shard (CorpusReader.readShard, chosen by
+ * content hash) into a partial CorpusStatistics file; merging all partials gives exactly the
+ * statistics of the whole corpus, so the model trained from the merge has the same feature
+ * selection and probabilities as one trained on a single node.
+ *     java ModelMerger count file dataType shard numShards partial.stats
+ *     java ModelMerger merge selectionMethod features model.bin partial.stats...
+ *     java ModelMerger local file dataType numShards selectionMethod features model.bin
+ * "local" runs the count step for every shard in its own JVM on this machine, then merges.
+ * N-gram features are admitted per shard by their count in that shard, so sharded n-gram
+ * statistics can differ slightly from single-node ones; unigram statistics are always exact.
+ **********************************************************************************************/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ModelMerger {
+
+	//counts the documents of one shard of a corpus (within the options' memory budget, if set)
+	public static CorpusStatistics countShard(String fileName, char dataType, int shard, int numShards,
+			LearnerOptions options) throws IOException
+	{
+		final DocumentBuilder builder = new DocumentBuilder(options);
+		if (options.getMemoryBudget() > 0)
+		{
+			final SpillingCounter counter = new SpillingCounter(options.getMemoryBudget(), null);
+			try
+			{
+				CorpusReader.readShard(fileName, dataType, shard, numShards, new DocumentHandler() {
+					public void document(String[] cats, String text) throws IOException {
+						counter.add(builder.build(cats, text));
+					}
+				});
+				return counter.finish();
+			}
+			finally
+			{
+				counter.deleteRuns();
+			}
+		}
+		final List<Document> docs = new ArrayList<Document>();
+		CorpusReader.readShard(fileName, dataType, shard, numShards, new DocumentHandler() {
+			public void document(String[] cats, String text) throws IOException {
+				docs.add(builder.build(cats, text));
+			}
+		});
+		return new CorpusStatistics(docs);
+	}
+
+	//merges partial statistics files and trains a model from the result
+	public static NaiveBayesLearner merge(List<String> partialFiles, char selectionMethod, int features,
+			LearnerOptions options) throws IOException
+	{
+		List<CorpusStatistics> parts = new ArrayList<CorpusStatistics>();
+		for (String f: partialFiles)
+			parts.add(CorpusStatistics.load(f));
+		return new NaiveBayesLearner(CorpusStatistics.merge(parts), selectionMethod, features, options);
+	}
+
+	//counts every shard in a separate local JVM, waits for all of them and returns the partial files
+	public static List<String> countLocally(String fileName, char dataType, int numShards) throws IOException, InterruptedException
+	{
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		List<Process> procs = new ArrayList<Process>();
+		List<String> partials = new ArrayList<String>();
+		for (int s = 0; s < numShards; s++)
+		{
+			File partial = File.createTempFile("shard" + s + "-", ".stats");
+			partial.deleteOnExit();
+			partials.add(partial.getPath());
+			ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					ModelMerger.class.getName(), "count", fileName, String.valueOf(dataType),
+					String.valueOf(s), String.valueOf(numShards), partial.getPath());
+			pb.inheritIO();
+			procs.add(pb.start());
+		}
+		for (int s = 0; s < numShards; s++)
+		{
+			int exit = procs.get(s).waitFor();
+			if (exit != 0)
+				throw new IOException("Counting shard " + s + " failed with exit code " + exit);
+		}
+		return partials;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String mode = (args.length > 0) ? args[0] : "";
+		if (mode.equals("count") && args.length == 6)
+		{
+			CorpusStatistics stats = countShard(args[1], args[2].charAt(0), Integer.parseInt(args[3]),
+					Integer.parseInt(args[4]), new LearnerOptions());
+			stats.save(args[5]);
+			System.out.println("Shard " + args[3] + ": " + stats.numDocs() + " documents, " + stats.numTerms() + " terms");
+		}
+		else if (mode.equals("merge") && args.length >= 5)
+		{
+			List<String> partials = new ArrayList<String>();
+			for (int i = 4; i < args.length; i++)
+				partials.add(args[i]);
+			NaiveBayesLearner m = merge(partials, args[1].charAt(0), Integer.parseInt(args[2]), new LearnerOptions());
+			m.save(args[3]);
+			m.printData();
+		}
+		else if (mode.equals("local") && args.length == 7)
+		{
+			List<String> partials = countLocally(args[1], args[2].charAt(0), Integer.parseInt(args[3]));
+			NaiveBayesLearner m = merge(partials, args[4].charAt(0), Integer.parseInt(args[5]), new LearnerOptions());
+			m.save(args[6]);
+			m.printData();
+			for (String f: partials)
+				new File(f).delete();
+		}
+		else
+		{
+			System.err.println("usage: ModelMerger count file dataType shard numShards partial.stats");
+			System.err.println("       ModelMerger merge selectionMethod features model.bin partial.stats...");
+			System.err.println("       ModelMerger local file dataType numShards selectionMethod features model.bin");
+			System.exit(1);
+		}
+	}
+}
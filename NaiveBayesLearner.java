@@ -3,60 +3,77 @@ package classifier;
  * AUTHOR: Advait Chauhan
  * 
  * DEPENDENCIES: 
- * Score.java, RedBlackBST.java, Queue.java,  StringStemmer.java, Stemmer.java
+ * Score.java, RedBlackBST.java, Queue.java, IntQueue.java, TextPipeline.java, TokenHandler.java, TermDictionary.java, CorpusReader.java, LearnerOptions.java,
+ * LongIntMap.java, NgramWindow.java, Document.java, DocumentBuilder.java, LabelStats.java, MaxPQ.java,
+ * CorpusStatistics.java, Metrics.java, SpillingCounter.java, CorpusCache.java, DocumentSink.java,
+ * ScoringKernel.java, WeightStore.java, WritableWeights.java, HeapWeights.java, OffHeapWeights.java, QuantizedWeights.java,
+ * FrontCodedVocab.java, TermLookup.java, MinimalPerfectHash.java, DoubleArrayTrie.java
  * 
  * DESCRIPTION: This program attempts to classify text by Native Bayesian model. 
  * Is built to implement multiple feature selection methods and for input, either user-generated
  * spreadsheet input (column 1 - category, column 2 - text) or Reuters RCV1 XML datasets. 
  **********************************************************************************************/
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.io.PrintStream;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.io.FileOutputStream;
 
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-
 
 public class NaiveBayesLearner {	
 
-	//Regular expression patterns for parsing through RCV1
-	private final Pattern topicPattern = Pattern.compile("<TOPICS><D>(.+?)</D></TOPICS>");
-	private final Pattern topicYAY = Pattern.compile("<REUTERS TOPICS=\"YES\"");
-	private final Pattern bodyPattern = Pattern.compile("<BODY>(.+?)</BODY>");
-	private final Pattern docPattern = Pattern.compile("<REUTERS(.+?)</REUTERS>");
-	
 	private int numDocs; 	//total # of documents inputted
 	private int numCats; 	//total # of categories found
 	private int numVocab;   //total # of initial vocab words found
 	private int numVocabReduced;  //total # of vocab words after feature selection
 	
-	//stores all vocabulary found in inputted documents
-	//and the overall wordcount
-	/** Vocabs Red-Black Tree with key=term and value=freq **/
-	private RedBlackBST<String, Integer> vocab;
+	//counts of all vocabulary and categories found in inputted documents (sorted term/category 
+	//indices, overall wordcount, per-category document and occurrence counts). May be shared
+	//read-only with other learners trained on the same documents.
+	private CorpusStatistics stats;
+	
+	//all categories, in sorted order (kept by the model itself, so a loaded model needs no stats)
+	private String[] categoryNames;
 	/** selected Vocabs after MI/Chi-Sq Red-Black Tree with key=term and value=freq **/
 	private RedBlackBST<String, Integer> selectVocab;
-	/** This tree has key=class_label and value= queue of selected top feature terms in the class **/
-	private RedBlackBST<String, Queue<String>> catFeatures;
+	/** a compressed model's selected vocabulary instead, kept front-coded with the freq of each 
+	 * row, and only decoded into Strings when a term is asked for (selectVocab stays empty) **/
+	private FrontCodedVocab frontVocab;
+	private int[] frontTotals;
+	/** top selected features of each category in decreasing order of their MI/Chi-Sq score: 
+	 * catFeatureIds[c][i] is a term id (rank in selectVocab), only resolved to its term when asked 
+	 * for, and catFeatureScores[c][i] its score (null in a loaded model; see topFeatures) **/
+	private int[][] catFeatureIds;
+	private double[][] catFeatureScores;
+	/** selected Vocabs looked up by char span (a minimal perfect hash or a trie, as the set is 
+	 * fixed once trained; see LearnerOptions.lookup); term ids equal their rank in selectVocab **/
+	private TermLookup selectTerms;
+	//selectRows[r] = index in stats of the term at rank r of selectVocab
+	private int[] selectRows;
 	
+	//optional training settings (n-grams etc.)
+	private LearnerOptions options;
 	
-	//Stores all categories as keys, with each category having a group of documents as value
-	private RedBlackBST<String, HashSet<HashMap<String, Integer>>> masterTree;
-
-	//Stores # of documents in which a given token is found within a given category
+	//selected n-grams for classification: their component terms get local ids, and
+	//n-gram keys packed from those ids map to the n-gram's row in selectVocab
+	private TermDictionary ngramTerms;
+	private LongIntMap ngramRows;
+	
+	//Stores # of documents in which a given token is found within a given category (from stats)
 	private int [][] tokenAppearanceDoc;
 	
 	//Stores total # of documents in which a token is found
@@ -65,15 +82,46 @@ public class NaiveBayesLearner {
 	//Stores number of documents in each category
 	private int [] catCount;
 	private double[] prior;    //prior probabilities (catCount[i]/numCats)
+	private double[] logPrior; //log of the prior probabilities
 	
-	/*stores posterior probability computed values
-	 * probabilities[t][c] = posterior probability of token t in class c 
-                           = likelihood probability of finding token t given we are in class c */
-	private double [][] probabilities;
+	/*stores the raw counts the likelihoods are estimated from (on the heap, in native memory, or
+	 * mapped from a model file, see LearnerOptions.offHeap; null in a compressed model)
+	 * classTermCounts[t*numCats + c] = # of occurrences of selected token t in class c */
+	private IntBuffer classTermCounts;
 	
 	//stores total number of tokens per category
 	private int[] categoryTotalTokens;
 	
+	//idf[t] = inverse document frequency of selected token t (used for TF-IDF document weighting)
+	private double[] idf;
+	
+	//scoring weights for the current smoothing constant (replaced as a whole by setSmoothing)
+	private volatile ScoringTables tables;
+	
+	//per-thread buffers of classifyFused
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		protected Scratch initialValue() { return new Scratch(); }
+	};
+	
+	/*linear scoring tables for one smoothing constant alpha: a document's score for class c is 
+	 * bias[c] + sum over its tokens t of (token weight) * weights[t*numCats + c]
+	 *   MULTINOMIAL: weights = log P(t|c) = log((count(t,c) + alpha)/(tokens(c) + alpha*numVocabReduced)),
+	 *                bias = log P(c)
+	 *   COMPLEMENT:  weights = -log P(t|not c), estimated from the counts of all other classes and
+	 *                normalized by the sum of their magnitudes in class c; bias = 0               */
+	private static final class ScoringTables {
+		final double alpha;
+		final WeightStore weights;
+		final double[] bias;
+		
+		ScoringTables(double alpha, WeightStore weights, double[] bias)
+		{
+			this.alpha = alpha;
+			this.weights = weights;
+			this.bias = bias;
+		}
+	}
+	
 /******************************************************************************************** 
  * Constructor which takes in the document/category data feed and performs and stores
  * computations that can then be used to classify new documents via Naive Bayesian method.  
@@ -82,50 +130,104 @@ public class NaiveBayesLearner {
 	//feature selection - 'C' for chisquared, 'M' for mutual information
 	public NaiveBayesLearner (String fileName, char dataType, char selectionMethod, int features) throws IOException
 	{
-		masterTree = new RedBlackBST<String, HashSet<HashMap<String, Integer>>>();
-		vocab = new  RedBlackBST<String, Integer>();
-		selectVocab = new RedBlackBST<String, Integer>();
-		catFeatures = new RedBlackBST<String, Queue<String>>();
-		numDocs = 0;
-
+		this(fileName, dataType, selectionMethod, features, new LearnerOptions());
+	}
+	
+	//as above, with optional settings such as n-gram features
+	public NaiveBayesLearner (String fileName, char dataType, char selectionMethod, int features, LearnerOptions options) throws IOException
+	{
 		//Parse the topics and body from each document and "learn them"
-		if (dataType == 'R')
-			parseReuters(fileName);
-		else if (dataType == 'T')
-			parseTickets(fileName);
-		else
-			throw new IllegalArgumentException("Invalid DataType Selection");
-		
+		this(countCorpus(fileName, dataType, options), selectionMethod, features, options);
+	}
+	
+	//learns documents which have already been tokenized (e.g. by a DocumentBuilder shared between 
+	//the folds of a cross-validation). The documents are only read, so several learners may share them.
+	public NaiveBayesLearner (List<Document> docs, char selectionMethod, int features, LearnerOptions options)
+	{
+		this(new CorpusStatistics(docs), selectionMethod, features, options);
+	}
+	
+	//trains from corpus statistics which have already been counted; only feature selection and
+	//the probability tables are computed, so learners with different settings can share one count
+	public NaiveBayesLearner (CorpusStatistics stats, char selectionMethod, int features, LearnerOptions options)
+	{
+		this(options);
+		this.stats = stats;
+		train(selectionMethod, features);
+	}
+	
+	//counts a training file in memory, or within the memory budget of the options if one is set
+	private static CorpusStatistics countCorpus(String fileName, char dataType, LearnerOptions options) throws IOException
+	{
+		if (options.getMemoryBudget() > 0)
+			return SpillingCounter.count(fileName, dataType, options);
+		return new CorpusStatistics(new DocumentBuilder(options).readCorpus(fileName, dataType));
+	}
+	
+	private NaiveBayesLearner (LearnerOptions options)
+	{
+		this.options = options;
+		selectVocab = new RedBlackBST<String, Integer>();
+	}
+	
+	//performs and stores the computations needed for classification once all documents are counted
+	private void train(char selectionMethod, int features)
+	{
 		//fill in our variables after getting data
-		numCats = masterTree.size();
-		numVocab = vocab.size();
-		//for (String word: vocab.keys()) System.out.println(word);
+		numDocs = stats.numDocs();
+		numCats = stats.numCats();
+		numVocab = stats.numTerms();
+		categoryNames = new String[numCats];
+		for (int c = 0; c < numCats; c++)
+			categoryNames[c] = stats.category(c);
+		//for (int t = 0; t < numVocab; t++) System.out.println(stats.term(t));
 		
 		//Declare and fill up our category count and prior probability arrays:
 		//by counting number of documents per category
 		catCount = new int [numCats];
 		prior = new double[numCats];
+		logPrior = new double[numCats];
 		countCategories();
 		
 		//Compute data and fill up arrays for # of documents that each token appears in
-		tokenAppearanceDoc = new int [numVocab][numCats];
+		tokenAppearanceDoc = stats.docFreqTable();
 		tokenAppearance = new int[numVocab];
+		long t0 = Metrics.start();
 		computeTokenData();
+		Metrics.COMPUTE_TOKEN_DATA.recordSince(t0);
 		
 		//select k features per category using mutual information formula and the 
 		//token appearance data. Then update the new reduced vocabulary tree
 		//input 'C' instead of 'M' of chi-squared feature selection is desired
+		t0 = Metrics.start();
 		FeatureSelect(features, selectionMethod); 
+		Metrics.FEATURE_SELECT.recordSince(t0);
 		numVocabReduced = selectVocab.size(); 
 		//System.out.println("Reduced Size " + numVocabReduced);
 		
+		//index the selected vocabulary by char span for classification
+		selectTerms = buildLookup();
+		if (options.getNgramOrder() > 1)
+			indexNgrams();
+		
 		//compute total # of tokens per category (only counting tokens from the selected vocabulary)
 		categoryTotalTokens = new int [numCats];
 		computeTokensPerCategory();
 		
-		//compute likelihood probabilities (t given c).
-		probabilities = new double [numVocabReduced][numCats];
+		//keep the raw token counts (t given c) and compute their smoothed log likelihoods
+		classTermCounts = options.isOffHeap() ? OffHeapWeights.directInts(numVocabReduced*numCats) 
+				: IntBuffer.wrap(new int [numVocabReduced*numCats]);
+		idf = new double[numVocabReduced];
+		t0 = Metrics.start();
 		computeProbabilities();
+		Metrics.COMPUTE_PROBABILITIES.recordSince(t0);
+		
+		//the corpus-wide tables are only needed for training; dropping them leaves the model's
+		//heap footprint at little more than its selected vocabulary
+		stats = null;
+		tokenAppearanceDoc = null;
+		tokenAppearance = null;
+		selectRows = null;
 	}
 	
 /******************************************************************************************** 
@@ -138,31 +240,43 @@ public class NaiveBayesLearner {
 		System.out.println();
 		System.out.println("------Classification Results------");
 		
+		//documents already cleaned and stemmed are read from the corpus cache, if there is one 
+		//(n-grams of a test document depend on the learned vocabulary, so they need the raw text)
+		if (options.getCacheDirectory() != null && ngramRows == null)
+		{
+			classifyCached(testFile);
+			return;
+		}
+		
 		//Break Reuters input feed into documents
-		List<String> docs = separateDocuments(testFile);
+		List<String> docs = CorpusReader.separateDocuments(testFile);
 		
 		//For each document, extract the body and attempt to classify the document
-		int numDocs = 1;
+		int numDocs = 0;
 		int correctCount = 0;
 		for (String doc: docs)
 		{
 			String cat = " ";
 			String body = " ";
+			String [] cats;
 			
 			//check if topic is yes
-			Matcher topicMatcher = topicYAY.matcher(doc);
+			Matcher topicMatcher = CorpusReader.topicYAY.matcher(doc);
 			if (topicMatcher.find())
 			{
 				//get what is between topic tags
-				Matcher catMatcher = topicPattern.matcher(doc);
+				Matcher catMatcher = CorpusReader.topicPattern.matcher(doc);
 				if (catMatcher.find())
+				{
 					cat = catMatcher.group(1);
+					cats = cat.split("</D><D>");
+				}
 				else
 					continue;
 					//throw new IllegalArgumentException("Topic UnFound");
 				
 				//get what is between the body tags
-				Matcher bodyMatcher = bodyPattern.matcher(doc);
+				Matcher bodyMatcher = CorpusReader.bodyPattern.matcher(doc);
 				if (bodyMatcher.find())
 					body = bodyMatcher.group(1);
 				else
@@ -170,19 +284,18 @@ public class NaiveBayesLearner {
 					//throw new IllegalArgumentException("Body UnFound");
 	
 				//classify the text and print out the actual category and the guessed category
-				//also do a check to see if we have a correct classification!
+				//also do a check to see if we have a correct classification (the guess must be
+				//one of the document's topics, not merely a substring of the topic list)
 				String guess = classify(body);
-				Pattern guessP = Pattern.compile(guess);
-				Matcher test = guessP.matcher(cat);
 				String match = "No";
-				if (test.find())
+				if (isOneOf(guess, cats))
 				{
 					match = "Yes";
 					correctCount++;
 				}
 				
-				System.out.println("Document " + numDocs + ": " + " Guess-" + guess + "  Actual-" + cat + "   Match: " + match);
 				numDocs++;
+				System.out.println("Document " + numDocs + ": " + " Guess-" + guess + "  Actual-" + cat + "   Match: " + match);
 			}
 			
 		}
@@ -193,243 +306,787 @@ public class NaiveBayesLearner {
 		System.out.println("Accuracy: " + accuracy);
 	}
 	
+	//classifyFile over the cached tokenized documents of a Reuters test file
+	private void classifyCached(String testFile) throws IOException
+	{
+		final int[] counts = new int[2];   //documents, correct guesses
+		new CorpusCache(new File(options.getCacheDirectory())).stream(testFile, 'R', options, new DocumentSink() {
+			public void document(Document d) {
+				String guess = classify(d);
+				String match = "No";
+				if (isOneOf(guess, d.labels()))
+				{
+					match = "Yes";
+					counts[1]++;
+				}
+				counts[0]++;
+				System.out.println("Document " + counts[0] + ": " + " Guess-" + guess + "  Actual-" 
+						+ String.join("</D><D>", d.labels()) + "   Match: " + match);
+			}
+		});
+		System.out.println();
+		System.out.println("-------Classifier Statistics------");
+		double accuracy = (double) counts[1]/counts[0];
+		System.out.println("Number of Correct Guesses:" + counts[1] + " out of " + counts[0] + " documents.");
+		System.out.println("Accuracy: " + accuracy);
+	}
+	
+	//multi-label classification of a set of data in Reuters format: every document is assigned
+	//all categories whose posterior probability is at least threshold, and the predictions are
+	//compared with all of the document's topics. Returns (and prints) per-label statistics.
+	public LabelStats classifyFileLabels(String testFile, final double threshold) throws IOException {
+		final LabelStats stats = new LabelStats();
+		CorpusReader.readReuters(testFile, new DocumentHandler() {
+			public void document(String[] cats, String text) throws IOException {
+				stats.record(cats, classifyLabels(text, threshold));
+			}
+		});
+		stats.print();
+		return stats;
+	}
+	
+	//returns every category whose posterior probability P(c|d) for the new document d is at 
+	//least threshold (possibly none), most probable first
+	public List<String> classifyLabels (String d, double threshold) throws IOException {
+		double[] post = posteriors(documentRows(d));
+		
+		MaxPQ<Score> rank = new MaxPQ<Score>();
+		for (int c = 0; c < numCats; c++)
+		{
+			if (post[c] >= threshold)
+				rank.insert(new Score(c, post[c]));
+		}
+		List<String> labels = new ArrayList<String>();
+		while (!rank.isEmpty())
+			labels.add(categoryNames[rank.delMax().getIndex()]);
+		return labels;
+	}
+	
 	//returns the category which a new document d is most likely to belong to
 	public String classify (String d) throws IOException {
-		//likelihood of category
-		double [] score = new double[numCats];
-		
-		//tokenize, stem, remove stopwords, and remove rogue (non selected vocabulary) tokens from the document
-		String d1 = StringStemmer.reduce(StringStemmer.swRemove(d));
-		String [] dWords = d1.split("\\s"); 
-		Queue<String> dVocabWords = new Queue<String>();
-		for (String s: dWords) {
-			if (selectVocab.contains(s))
+		long t0 = Metrics.start();
+		String guess = classify(documentRows(d));
+		Metrics.CLASSIFY.recordSince(t0);
+		return guess;
+	}
+	
+	//same result as classify(d), from raw chars to scores in one streaming pass: the stems from
+	//the text pipeline are looked up as they are found, and their rows collected in this thread's
+	//buffers, so no intermediate Strings or queues are created
+	public String classifyFused (String d) throws IOException {
+		long t0 = Metrics.start();
+		Scratch s = scratch.get();
+		s.collect(d);
+		long t1 = Metrics.start();
+		ScoringTables st = tables;
+		if (s.score.length != numCats)
+			s.score = new double[numCats];
+		System.arraycopy(st.bias, 0, s.score, 0, numCats);
+		String guess = categoryNames[maxIndex(scores(st, s.rows, s.n, s.x, s.score))];
+		Metrics.SCORING.recordSince(t1);
+		Metrics.CLASSIFY.recordSince(t0);
+		return guess;
+	}
+	
+	//the reusable state of classifyFused for one thread
+	private final class Scratch implements TokenHandler {
+		final NgramWindow window = (ngramRows != null) ? new NgramWindow(options.getNgramOrder()) : null;
+		int[] rows = new int[256];
+		double[] x = new double[256];
+		double[] score = new double[0];
+		int n;
+		
+		//collects the rows of the document's tokens and n-grams
+		void collect(String d)
+		{
+			n = 0;
+			if (window != null)
+				window.reset();
+			options.getPipeline().tokenize(d, this);
+		}
+		
+		public void token(char[] buf, int off, int len) {
+			add(selectTerms.get(buf, off, len));
+			if (window != null)
 			{
-				dVocabWords.enqueue(s);
+				window.push(ngramTerms.get(buf, off, len));
+				for (int k = 2; k <= window.order(); k++)
+					add(ngramRows.get(window.key(k), -1));
 			}
 		}
 		
-		//compute the probability that document falls in each category
-		for (int c = 0; c < numCats; c++)
+		private void add(int row)
 		{
-			//score[c] += Math.log(prior[c]);
-			for (String word: dVocabWords) 
+			if (row < 0)
+				return;
+			if (n == rows.length)
 			{
-				int t = selectVocab.rank(word);
-				score[c] += probabilities[t][c];
+				rows = Arrays.copyOf(rows, 2*n);
+				x = new double[2*n];
 			}
-			//System.out.println(masterTree.select(c) + ": " + score[c]);
+			rows[n++] = row;
 		}
+	}
+	
+	//returns the category which an already tokenized document is most likely to belong to
+	public String classify (Document d) {
+		return classify(documentRows(d));
+	}
+	
+	//posterior probability of every category for a new document d, indexed like category(c)
+	public double[] posteriors (String d) throws IOException {
+		return posteriors(documentRows(d));
+	}
+	
+	public int numCategories()
+	{
+		return numCats;
+	}
+	
+	//the category with index c (categories are indexed in sorted order)
+	public String category(int c)
+	{
+		return categoryNames[c];
+	}
+	
+	//the (at most) n best features selected for category c, with their scores, e.g. to explain 
+	//a classification; a view of the model's own arrays, so nothing is copied. A loaded model 
+	//does not keep its selection scores, and has none
+	public TopFeatures topFeatures(int c, int n)
+	{
+		if (c < 0 || c >= numCats)
+			throw new IndexOutOfBoundsException("No category " + c);
+		if (n < 0)
+			throw new IllegalArgumentException("n must not be negative");
+		return new TopFeatures(c, (catFeatureIds == null) ? 0 : Math.min(n, catFeatureIds[c].length));
+	}
+	
+	//the first features of a category in decreasing order of score; term(i) finds the term of 
+	//feature i in the selected vocabulary (O(log V)) only when it is called
+	public final class TopFeatures {
+		private final int c;
+		private final int size;
+		
+		private TopFeatures(int c, int size)
+		{
+			this.c = c;
+			this.size = size;
+		}
+		
+		public int size()              { return size; }
+		public String category()       { return categoryNames[c]; }
+		
+		//id of feature i: its row in the model (rank in the selected vocabulary)
+		public int termId(int i)       { return catFeatureIds[c][check(i)]; }
+		
+		//MI or Chi-Sq score of feature i for the category
+		public double score(int i)     { return catFeatureScores[c][check(i)]; }
+		
+		public String term(int i)      { return vocabTerm(catFeatureIds[c][check(i)]); }
+		
+		private int check(int i)
+		{
+			if (i < 0 || i >= size)
+				throw new IndexOutOfBoundsException("No feature " + i + " of " + size);
+			return i;
+		}
+	}
+	
+	//returns the category with the highest score given the rows of a document's tokens
+	private String classify (IntQueue dVocabRows) {
+		//log likelihood of category (or complement score)
+		long t0 = Metrics.start();
+		double [] score = scores(dVocabRows);
+		Metrics.SCORING.recordSince(t0);
 		
 		//return category with maximum score
-		return masterTree.select(maxIndex(score));
+		return categoryNames[maxIndex(score)];
+	}
+	
+	//score of every category given the rows of a document's tokens: with the default scoring this 
+	//is log P(c) + sum of log P(t|c). Each row's weights are contiguous, so this is one sparse dot
+	//product over numCats-long runs, whichever scoring engine built the tables.
+	private double[] scores (IntQueue rows) {
+		ScoringTables st = tables;
+		int[] r = rows.toArray();
+		return scores(st, r, r.length, new double[r.length], st.bias.clone());
+	}
+	
+	//adds the weights of the rows r[0, len) to score, which holds the bias on entry; r and x 
+	//(at least len long) are overwritten
+	private double[] scores (ScoringTables st, int[] r, int len, double[] x, double[] score) {
+		//group repeated rows: each distinct row is then weighted by its count
+		int n = ScoringKernel.group(r, len, x);
+		
+		//TF-IDF: weight each distinct row by log(1 + count) * idf, normalize to unit length
+		if (options.isTfidf())
+		{
+			double norm = 0;
+			for (int i = 0; i < n; i++)
+			{
+				x[i] = Math.log(1 + x[i])*idf[r[i]];
+				norm += x[i]*x[i];
+			}
+			norm = (norm > 0) ? Math.sqrt(norm) : 1;
+			for (int i = 0; i < n; i++)
+				x[i] /= norm;
+		}
+		
+		st.weights.accumulate(numCats, r, x, n, score);
+		return score;
+	}
+	
+	//cleans and stems a new document and returns the selected vocabulary row of each of its
+	//tokens and selected n-grams (with repeats)
+	private IntQueue documentRows (String d) throws IOException {
+		//clean and stem the text, and keep the rows of the selected vocabulary words (rogue 
+		//tokens are dropped without ever becoming Strings)
+		//with metrics on: lookup time, # of tokens, # of out-of-vocabulary tokens
+		final long[] m = Metrics.ENABLED ? new long[3] : null;
+		final IntQueue dVocabRows = new IntQueue();
+		final NgramWindow window = (ngramRows != null) ? new NgramWindow(options.getNgramOrder()) : null;
+		long t0 = Metrics.start();
+		options.getPipeline().tokenize(d, new TokenHandler() {
+			public void token(char[] buf, int off, int len) {
+				long l0 = Metrics.start();
+				int t = selectTerms.get(buf, off, len);
+				if (t >= 0)
+					dVocabRows.enqueue(t);
+				
+				//selected n-grams ending at this token
+				if (window != null)
+				{
+					window.push(ngramTerms.get(buf, off, len));
+					for (int n = 2; n <= window.order(); n++)
+					{
+						int g = ngramRows.get(window.key(n), -1);
+						if (g >= 0)
+							dVocabRows.enqueue(g);
+					}
+				}
+				if (Metrics.ENABLED)
+				{
+					m[0] += System.nanoTime() - l0;
+					m[1]++;
+					if (t < 0)
+						m[2]++;
+				}
+			}
+		});
+		
+		//the cleaning and stemming time is the pipeline's time less the time spent in lookups
+		if (Metrics.ENABLED)
+		{
+			Metrics.CLEAN.record(System.nanoTime() - t0 - m[0]);
+			Metrics.FEATURE_LOOKUP.record(m[0]);
+			Metrics.countDocument((int) m[1], (int) m[2]);
+		}
+		return dVocabRows;
+	}
+	
+	//returns the selected vocabulary row of each term occurrence of a tokenized document
+	private IntQueue documentRows (Document d) {
+		IntQueue dVocabRows = new IntQueue();
+		for (Map.Entry<String, Integer> e: d.termCounts().entrySet())
+		{
+			int t = selectTerms.get(e.getKey());
+			if (t >= 0)
+			{
+				for (int i = 0; i < e.getValue(); i++)
+					dVocabRows.enqueue(t);
+			}
+		}
+		return dVocabRows;
+	}
+	
+	//posterior probability of each category given the rows of a document's tokens, computed in
+	//log space (log prior + sum of log likelihoods) and normalized so the posteriors sum to 1.
+	//With complement scoring or TF-IDF weighting these are the normalized scores, not true posteriors.
+	private double[] posteriors (IntQueue rows) {
+		long t0 = Metrics.start();
+		double[] post = scores(rows);
+		Metrics.SCORING.recordSince(t0);
+		double max = Double.NEGATIVE_INFINITY;
+		for (int c = 0; c < numCats; c++)
+			max = Math.max(max, post[c]);
+		double sum = 0;
+		for (int c = 0; c < numCats; c++)
+		{
+			post[c] = Math.exp(post[c] - max);
+			sum += post[c];
+		}
+		for (int c = 0; c < numCats; c++)
+			post[c] /= sum;
+		return post;
 	}
 	
 	//returns the posterior probability given a category and token
 	public double getPostProb(String token, String cat) throws IOException
 	{
-		//We must stem the token input feed so it matches the tokens that are stored inside our data model,
-		//and then chop off the last whitespace character appended by the stemming method
-		String stoken = StringStemmer.reduce(token);
-		String stoken1 = stoken.substring(0, stoken.length()-1);
+		//We must stem the token input feed so it matches the tokens that are stored inside our data model
+		String stoken1 = options.getPipeline().stem(token);
 		
-		if (!masterTree.contains(cat)) 
+		int c = Arrays.binarySearch(categoryNames, cat);
+		if (c < 0) 
 			throw new IllegalArgumentException("This Category is nonexistent!");
 		
-		int c = masterTree.rank(cat);
+		//if token already contained within learned vocabulary, spit out its smoothed 
+		//posterior probability; rogue tokens are smoothed exactly like a selected token 
+		//with no occurrences in the category
+		requireCounts();
+		double alpha = tables.alpha;
+		int t = selectTerms.get(stoken1);
+		int count = (t >= 0) ? classTermCounts.get(t*numCats + c) : 0;
+		return (count + alpha)/(categoryTotalTokens[c] + alpha*numVocabReduced);
+	}
+	
+	//the additive smoothing constant the likelihoods are currently computed with
+	public double getSmoothing()
+	{
+		return tables.alpha;
+	}
+	
+	//recomputes the scoring weights from the stored raw counts for a new smoothing constant 
+	//(no retraining). Classifications running concurrently see either the old or the new 
+	//tables, never a mix of both.
+	public void setSmoothing(double alpha)
+	{
+		if (!(alpha > 0))
+			throw new IllegalArgumentException("Smoothing constant must be positive");
+		requireCounts();
 		
-		//if token already contained within learned vocabulary, spit out
-		//pre-computed posterior probability
-		if(selectVocab.contains(stoken1)) 
+		if (options.getScoring() == LearnerOptions.Scoring.COMPLEMENT)
+			tables = complementTables(alpha);
+		else
+			tables = multinomialTables(alpha);
+	}
+	
+	//log P(t|c) for every selected token and category: one log per category for the denominators,
+	//then one log per (token, category) count
+	private ScoringTables multinomialTables(double alpha)
+	{
+		double[] logDenom = new double[numCats];
+		double logAlpha = Math.log(alpha);
+		for (int c = 0; c < numCats; c++)
+			logDenom[c] = Math.log(categoryTotalTokens[c] + alpha*numVocabReduced);
+		WritableWeights logProb = newWeights();
+		for (int t = 0, i = 0; t < numVocabReduced; t++)
 		{
-			int t = selectVocab.rank(stoken1);
-			return probabilities[t][c];
+			for (int c = 0; c < numCats; c++, i++)
+			{
+				int count = classTermCounts.get(i);
+				logProb.set(i, (count == 0 ? logAlpha : Math.log(count + alpha)) - logDenom[c]);
+			}
+		}
+		return new ScoringTables(alpha, logProb, logPrior);
+	}
+	
+	//an empty weight table for every (selected token, category), on or off the heap
+	private WritableWeights newWeights()
+	{
+		int size = numVocabReduced*numCats;
+		return options.isOffHeap() ? new OffHeapWeights(size) : new HeapWeights(size);
+	}
+	
+	//Complement Naive Bayes (Rennie et al. 2003): each class is described by the token counts of 
+	//all other classes, which are far larger and more even than a small class's own counts. The 
+	//complement log likelihoods are normalized per class so that no class wins by the size of 
+	//its weights, and negated so the highest score still wins.
+	private ScoringTables complementTables(double alpha)
+	{
+		//total count of each token and of all tokens over all classes
+		int[] tokenTotal = new int[numVocabReduced];
+		long allTokens = 0;
+		for (int t = 0, i = 0; t < numVocabReduced; t++)
+		{
+			for (int c = 0; c < numCats; c++, i++)
+				tokenTotal[t] += classTermCounts.get(i);
+			allTokens += tokenTotal[t];
 		}
 		
-		//posterior probability formula for rogue tokens
-		else
+		double[] logDenom = new double[numCats];
+		for (int c = 0; c < numCats; c++)
+			logDenom[c] = Math.log(allTokens - categoryTotalTokens[c] + alpha*numVocabReduced);
+		WritableWeights weights = newWeights();
+		double[] norm = new double[numCats];
+		for (int t = 0, i = 0; t < numVocabReduced; t++)
 		{
-			return  (double)(1)/(numVocab + categoryTotalTokens[c]);
+			for (int c = 0; c < numCats; c++, i++)
+			{
+				double w = Math.log(tokenTotal[t] - classTermCounts.get(i) + alpha) - logDenom[c];
+				weights.set(i, w);
+				norm[c] += Math.abs(w);
+			}
 		}
+		for (int t = 0, i = 0; t < numVocabReduced; t++)
+		{
+			for (int c = 0; c < numCats; c++, i++)
+				weights.set(i, (norm[c] > 0) ? -weights.get(i)/norm[c] : 0);
+		}
+		return new ScoringTables(alpha, weights, new double[numCats]);
 	}
 	
 /*******************************************************************************************
- * Private Methods associated with the initial storage of the category and document data
- * into token-holding data structures 
- * @throws IOException 
+ * Model persistence: the trained counts are written to a binary file and reloaded without the
+ * training corpus. The scoring tables are recomputed from the counts on load. Models written
+ * before the text pipeline was stored are read with TextPipeline.REUTERS, which cleans as they did.
  * ******************************************************************************************/
-	private void parseTickets(String fileName) throws IOException
-	{
-		FileInputStream file = new FileInputStream(new File(fileName));
-		
-		//Get the workbook instance for XLS file 
-		XSSFWorkbook tickets = new XSSFWorkbook(file);
-			 
-		//Get first sheet from the workbook
-		XSSFSheet sheet = tickets.getSheetAt(0);
-		int rowNum = sheet.getLastRowNum();
-		
-		for (int i=1; i<rowNum+1; i++)
-		{
-			 XSSFRow row = sheet.getRow(i);
-			 
-			 String cat = row.getCell(1).getStringCellValue();
-			 String sum = " ";
-			 String notes = " ";
-			 String res = " ";
-			 
-			 if (row.getCell(2) != null)
-				 sum = row.getCell(2).getStringCellValue();
-			 if (row.getCell(3) != null)
-				 notes = row.getCell(3).getStringCellValue();
-			 if (row.getCell(4) != null)
-			 	 res = row.getCell(4).getStringCellValue();
-			 
-			 String fullDoc = sum + " " + notes + " " + res;
-			 System.out.println(cat);
-			 System.out.println(fullDoc);
-			 learnDoc(cat, fullDoc);
-			 numDocs++;
-		}
-	}
-	
-	//parse Reuters data, taking in document categories and text bodies and having them learned
-	private void parseReuters(String fileName) throws IOException
-	{
-		//Break input feed into documents using REUTERS divider
-		List<String> docs = separateDocuments(fileName);
-		
-		//Parse the topics and body from each document and "learn them"
-		for (String doc: docs)
+	private static final int MODEL_MAGIC = 0x4E424D31;   //"NBM1"
+	private static final int MODEL_VERSION = 6;   //2: the term lookup is stored after idf, 3: and its kind,
+	                                              //4: the text pipeline is stored after the settings,
+	                                              //5: the perfect hash is bit-packed,
+	                                              //6: with 32-bit fingerprints and their width stored
+	
+	//writes the trained model (settings, categories, selected vocabulary and raw counts) to a file.
+	//It is written to a temporary file which then replaces fileName, so saving a model loaded
+	//off-heap over the file it is mapped from never truncates the mapping while it is being read
+	public void save(String fileName) throws IOException
+	{
+		requireCounts();
+		File tmp = tempFileFor(fileName);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try
 		{
-			String cat = " ";
-			String body = " ";
-			String [] cats;
+			out.writeInt(MODEL_MAGIC);
+			out.writeInt(MODEL_VERSION);
+			out.writeInt(options.getNgramOrder());
+			out.writeDouble(tables.alpha);
+			out.writeInt(options.getScoring().ordinal());
+			out.writeBoolean(options.isTfidf());
+			options.getPipeline().writeTo(out);
 			
-			//check if topic is yes
-			Matcher topicMatcher = topicYAY.matcher(doc);
-			if (topicMatcher.find())
+			out.writeInt(numDocs);
+			out.writeInt(numVocab);
+			out.writeInt(numCats);
+			for (int c = 0; c < numCats; c++)
 			{
-				//get what is between topic tags
-				Matcher catMatcher = topicPattern.matcher(doc);
-				if (catMatcher.find())
-				{	
-					cat = catMatcher.group(1);
-					//split topic string to get all topics
-					cats = cat.split("</D><D>");
-				}
-				else
-					continue;
-				
-				//get what is between the body tags
-				Matcher bodyMatcher = bodyPattern.matcher(doc);
-				if (bodyMatcher.find())
-					body = bodyMatcher.group(1);
-				else
-					continue;
-				
-				//learn it
-				for (String CAT: cats)
-				{
-					learnDoc(CAT, body);
-				}
-				numDocs++;
+				out.writeUTF(categoryNames[c]);
+				out.writeInt(catCount[c]);
+				out.writeInt(categoryTotalTokens[c]);
 			}
+			out.writeInt(numVocabReduced);
+			for (String word: selectVocab.keys())
+			{
+				out.writeUTF(word);
+				out.writeInt(selectVocab.get(word));
+			}
+			for (int t = 0; t < numVocabReduced; t++)
+				out.writeDouble(idf[t]);
+			writeLookup(out);
+			
+			//the count table as one contiguous block, token-major like classTermCounts
+			for (int i = 0; i < classTermCounts.capacity(); i++)
+				out.writeInt(classTermCounts.get(i));
+			out.close();
+			Files.move(tmp.toPath(), new File(fileName).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally
+		{
+			out.close();
+			tmp.delete();
 		}
 	}
 	
-	//breaks Reuters style XML-formated input data into documents
-	private List<String> separateDocuments(String fileName) {
-		List<String> docs = new ArrayList<String>();
-		String line = " ";
+	//a new temporary file in the directory of fileName, to be moved over it once written
+	private static File tempFileFor(String fileName) throws IOException
+	{
+		File target = new File(fileName).getAbsoluteFile();
+		return File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+	}
+	
+	//reads a model written by save
+	public static NaiveBayesLearner load(String fileName) throws IOException
+	{
+		return load(fileName, false);
+	}
+	
+	//reads a model written by save; if offHeap, the count table is mapped straight from the file 
+	//(it is the file's last section) and the weights are computed into native memory
+	public static NaiveBayesLearner load(String fileName, boolean offHeap) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
 		try
 		{
-			//first convert the feed to string
-			BufferedReader br = new BufferedReader(new FileReader(fileName));
-			StringBuilder sb = new StringBuilder();
-			while ((line = br.readLine()) != null)
+			if (in.readInt() != MODEL_MAGIC)
+				throw new IOException("Not a model file: " + fileName);
+			int version = in.readInt();
+			if (version < 1 || version > MODEL_VERSION)
+				throw new IOException("Unsupported model version: " + fileName);
+			LearnerOptions options = new LearnerOptions().ngrams(in.readInt());
+			double alpha = in.readDouble();
+			options.smoothing(alpha).scoring(LearnerOptions.Scoring.values()[in.readInt()]).tfidf(in.readBoolean()).offHeap(offHeap);
+			if (version >= 4)
+				options.pipeline(TextPipeline.readFrom(in));
+			
+			NaiveBayesLearner m = new NaiveBayesLearner(options);
+			m.numDocs = in.readInt();
+			m.numVocab = in.readInt();
+			m.numCats = in.readInt();
+			m.categoryNames = new String[m.numCats];
+			m.catCount = new int[m.numCats];
+			m.categoryTotalTokens = new int[m.numCats];
+			m.prior = new double[m.numCats];
+			m.logPrior = new double[m.numCats];
+			for (int c = 0; c < m.numCats; c++)
 			{
-				sb.append(line);
+				m.categoryNames[c] = in.readUTF();
+				m.catCount[c] = in.readInt();
+				m.categoryTotalTokens[c] = in.readInt();
 			}
-			br.close();
-			String text = sb.toString(); 
+			m.countCategories();
+			
+			m.numVocabReduced = in.readInt();
+			for (int t = 0; t < m.numVocabReduced; t++)
+				m.selectVocab.put(in.readUTF(), in.readInt());
+			if (options.getNgramOrder() > 1)
+				m.indexNgrams();
+			m.idf = new double[m.numVocabReduced];
+			for (int t = 0; t < m.numVocabReduced; t++)
+				m.idf[t] = in.readDouble();
+			m.readLookup(in, version);
 			
-			//separate into documents
-			Matcher docMatcher = docPattern.matcher(text);
-			while(docMatcher.find())
+			int size = m.numVocabReduced*m.numCats;
+			if (offHeap)
+				m.classTermCounts = OffHeapWeights.mapInts(fileName, new File(fileName).length() - 4L*size, size);
+			else
 			{
-				docs.add(docMatcher.group());
+				int[] counts = new int[size];
+				for (int i = 0; i < size; i++)
+					counts[i] = in.readInt();
+				m.classTermCounts = IntBuffer.wrap(counts);
 			}
-		} 
-		catch (IOException ioe)
+			m.setSmoothing(alpha);
+			return m;
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e)
 		{
-			ioe.printStackTrace();
+			throw new IOException("Corrupt model file: " + fileName, e);
+		}
+		finally
+		{
+			in.close();
 		}
-		
-		return docs;
 	}
 	
-	//Breaks down and stores document/category data into the learning system's data structures
-	private void learnDoc(String cat, String text) throws IOException {
-		//new hashmap representing the document
-		HashMap<String, Integer> hashDoc = new HashMap<String, Integer>();
-		
-		//remove stop words, then remove suffixes/prefixes
-		String reducedText = StringStemmer.reduce(StringStemmer.swRemove(text));
-		
-		//Put tokens into the hash-map which stores tokens and determines how many 
-		//of each token are there. Also update overall vocabulary.
-		String [] reducedTokens = reducedText.split("\\s");
-		for (String t: reducedTokens)
+/*******************************************************************************************
+ * Compressed models: only what classification needs, with the current scoring weights 
+ * quantized to 8 or 16 bits per weight (QuantizedWeights) and the selected vocabulary 
+ * front-coded (FrontCodedVocab). The quantized weights are scored directly, never expanded.
+ * A compressed model keeps no raw counts, so it cannot be re-smoothed, saved in the full 
+ * format or asked for getPostProb.
+ * ******************************************************************************************/
+	private static final int COMPRESSED_MAGIC = 0x4E425131;   //"NBQ1"
+	private static final int COMPRESSED_VERSION = 6;   //2: the term lookup is stored after idf, 3: and its kind,
+	                                                   //4: the text pipeline is stored after the settings,
+	                                                   //5: the perfect hash is bit-packed,
+	                                                   //6: with 32-bit fingerprints and their width stored
+	
+	//writes the model for classification only, with weights quantized to bits (8 or 16) bits
+	//(through a temporary file, like save)
+	public void saveCompressed(String fileName, int bits) throws IOException
+	{
+		ScoringTables st = tables;
+		QuantizedWeights weights = QuantizedWeights.quantize(st.weights, numCats, bits);
+		File tmp = tempFileFor(fileName);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try
 		{
-			wordCount(t, hashDoc);
-			vocabCount(t, vocab);
+			out.writeInt(COMPRESSED_MAGIC);
+			out.writeInt(COMPRESSED_VERSION);
+			out.writeInt(options.getNgramOrder());
+			out.writeDouble(st.alpha);
+			out.writeInt(options.getScoring().ordinal());
+			out.writeBoolean(options.isTfidf());
+			options.getPipeline().writeTo(out);
+			
+			out.writeInt(numDocs);
+			out.writeInt(numVocab);
+			out.writeInt(numCats);
+			for (int c = 0; c < numCats; c++)
+			{
+				out.writeUTF(categoryNames[c]);
+				out.writeInt(catCount[c]);
+				out.writeInt(categoryTotalTokens[c]);
+				out.writeDouble(st.bias[c]);
+			}
+			if (frontVocab != null)
+			{
+				frontVocab.writeTo(out);
+				for (int total: frontTotals)
+					out.writeInt(total);
+			}
+			else
+			{
+				new FrontCodedVocab(selectVocab.keys()).writeTo(out);
+				for (String word: selectVocab.keys())
+					out.writeInt(selectVocab.get(word));
+			}
+			for (int t = 0; t < numVocabReduced; t++)
+				out.writeDouble(idf[t]);
+			writeLookup(out);
+			weights.writeTo(out);
+			out.close();
+			Files.move(tmp.toPath(), new File(fileName).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
 		}
-		
-		//Put the hashDoc in a set with all other hashDocs of the same category
-		if (masterTree.contains(cat))
-			masterTree.get(cat).add(hashDoc);
-		else
+		finally
 		{
-			HashSet<HashMap<String, Integer>> category = new HashSet<HashMap<String, Integer>>();
-			category.add(hashDoc);
-			masterTree.put(cat, category);
-		}	
+			out.close();
+			tmp.delete();
+		}
 	}
 	
-	//helper method for keeping count of vocabulary overall
-	private void vocabCount(String token, RedBlackBST<String, Integer> vocab)
+	//reads a model written by saveCompressed
+	public static NaiveBayesLearner loadCompressed(String fileName) throws IOException
 	{
-		if (vocab.contains(token))
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		try
 		{
-			int count = vocab.get(token);
-			vocab.put(token, ++count);
+			if (in.readInt() != COMPRESSED_MAGIC)
+				throw new IOException("Not a compressed model file: " + fileName);
+			int version = in.readInt();
+			if (version < 1 || version > COMPRESSED_VERSION)
+				throw new IOException("Unsupported compressed model version: " + fileName);
+			LearnerOptions options = new LearnerOptions().ngrams(in.readInt());
+			double alpha = in.readDouble();
+			options.smoothing(alpha).scoring(LearnerOptions.Scoring.values()[in.readInt()]).tfidf(in.readBoolean());
+			if (version >= 4)
+				options.pipeline(TextPipeline.readFrom(in));
+			
+			NaiveBayesLearner m = new NaiveBayesLearner(options);
+			m.numDocs = in.readInt();
+			m.numVocab = in.readInt();
+			m.numCats = in.readInt();
+			m.categoryNames = new String[m.numCats];
+			m.catCount = new int[m.numCats];
+			m.categoryTotalTokens = new int[m.numCats];
+			m.prior = new double[m.numCats];
+			m.logPrior = new double[m.numCats];
+			double[] bias = new double[m.numCats];
+			for (int c = 0; c < m.numCats; c++)
+			{
+				m.categoryNames[c] = in.readUTF();
+				m.catCount[c] = in.readInt();
+				m.categoryTotalTokens[c] = in.readInt();
+				bias[c] = in.readDouble();
+			}
+			m.countCategories();
+			
+			//the vocabulary stays front-coded: tokens are found through the stored lookup below
+			m.frontVocab = FrontCodedVocab.readFrom(in);
+			m.numVocabReduced = m.frontVocab.size();
+			m.frontTotals = new int[m.numVocabReduced];
+			for (int t = 0; t < m.numVocabReduced; t++)
+				m.frontTotals[t] = in.readInt();
+			if (options.getNgramOrder() > 1)
+				m.indexNgrams();
+			m.idf = new double[m.numVocabReduced];
+			for (int t = 0; t < m.numVocabReduced; t++)
+				m.idf[t] = in.readDouble();
+			m.readLookup(in, version);
+			
+			QuantizedWeights weights = QuantizedWeights.readFrom(in);
+			if (weights.size() != m.numVocabReduced*m.numCats)
+				throw new IOException("Corrupt compressed model file: " + fileName);
+			m.tables = new ScoringTables(alpha, weights, bias);
+			return m;
 		}
-		else
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e)
 		{
-			vocab.put(token, 1);
+			throw new IOException("Corrupt compressed model file: " + fileName, e);
 		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+/*******************************************************************************************
+ * Private helper methods
+ * ******************************************************************************************/
+	//indexes the selected vocabulary as the options ask
+	private TermLookup buildLookup()
+	{
+		if (options.getLookup() == LearnerOptions.Lookup.TRIE)
+			return DoubleArrayTrie.build(vocabTerms());
+		return MinimalPerfectHash.build(vocabTerms());
+	}
+	
+	//the selected terms in order of their rows
+	private Iterable<String> vocabTerms()
+	{
+		return (frontVocab != null) ? frontVocab : selectVocab.keys();
 	}
 	
-	//helper method for keeping count of tokens within a document
-	private void wordCount(String token, HashMap<String, Integer> doc) 
+	//the selected term of a row
+	private String vocabTerm(int row)
 	{
-		if (!doc.containsKey(token))
-				doc.put(token, 1);
-		else 
+		return (frontVocab != null) ? frontVocab.term(row) : selectVocab.select(row);
+	}
+	
+	//writes the kind of term lookup, then the lookup itself
+	private void writeLookup(DataOutputStream out) throws IOException
+	{
+		out.writeInt(options.getLookup().ordinal());
+		if (selectTerms instanceof DoubleArrayTrie)
+			((DoubleArrayTrie) selectTerms).writeTo(out);
+		else
+			((MinimalPerfectHash) selectTerms).writeTo(out);
+	}
+	
+	//reads the stored term lookup, or rebuilds it from the vocabulary for files written before it was 
+	//stored (version 1); version 2 files always hold a perfect hash, before version 5 it is unpacked and
+	//in version 5 it has 16-bit fingerprints
+	private void readLookup(DataInputStream in, int version) throws IOException
+	{
+		if (version >= 3)
+			options.lookup(LearnerOptions.Lookup.values()[in.readInt()]);
+		if (version == 1)
+			selectTerms = buildLookup();
+		else if (options.getLookup() == LearnerOptions.Lookup.TRIE)
+			selectTerms = DoubleArrayTrie.readFrom(in);
+		else if (version < 5)
+			selectTerms = MinimalPerfectHash.readUnpacked(in);
+		else if (version == 5)
+			selectTerms = MinimalPerfectHash.readVersion5(in);
+		else
+			selectTerms = MinimalPerfectHash.readFrom(in);
+		if (selectTerms.size() != numVocabReduced)
+			throw new IOException("Term lookup does not match the vocabulary");
+	}
+	
+	//fails if this is a compressed model, which keeps only quantized weights and no raw counts
+	private void requireCounts()
+	{
+		if (classTermCounts == null)
+			throw new IllegalStateException("A compressed model has no raw counts");
+	}
+	
+	//builds the span lookup for the selected n-grams
+	private void indexNgrams()
+	{
+		ngramTerms = new TermDictionary();
+		ngramRows = new LongIntMap();
+		int row = 0;
+		for (String word: vocabTerms())
 		{
-			int currentCount = doc.get(token);
-			doc.put(token, ++currentCount);
+			if (word.indexOf(' ') >= 0)
+			{
+				String[] parts = word.split(" ");
+				NgramWindow w = new NgramWindow(parts.length);
+				for (String part: parts)
+					w.push(ngramTerms.add(part));
+				ngramRows.put(w.key(parts.length), row);
+			}
+			row++;
 		}
 	}
 	
 	//fill in counts of documents per category and document prior probability
 	private void countCategories() {
-		int i = 0;
-		for (String c: masterTree.keys())
+		if (stats != null)
 		{
-			catCount[i] = masterTree.get(c).size();
-			i++;
+			for (int i = 0; i < numCats; i++)
+				catCount[i] = stats.catCount(i);
 		}
 		
 		//Rather redudant, but we divide each # of documents in each category by # of total documents
@@ -437,14 +1094,26 @@ public class NaiveBayesLearner {
 		for (int i1 = 0; i1 < numCats; i1++) 
 		{
 			prior[i1] = (double) catCount[i1]/numDocs;
+			logPrior[i1] = Math.log(prior[i1]);
+		}
+	}
+	
+	//is s equal to one of the strings in a?
+	private static boolean isOneOf(String s, String[] a)
+	{
+		for (String x: a)
+		{
+			if (x.equals(s))
+				return true;
 		}
+		return false;
 	}
 	
 	//returns the index corresponding to maximum value in array of doubles
 	private int maxIndex (double[] arr)
 	{
 		int maxInd = 0;
-		double max = Double.MIN_VALUE;
+		double max = Double.NEGATIVE_INFINITY;
 		for (int i = 0; i < arr.length; i++)
 		{
 			if (arr[i] > max) {
@@ -460,29 +1129,15 @@ public class NaiveBayesLearner {
  * for every token, figuring out how many documents in each category contain that token. 
  * This is necessary data for our feature selection algorithms. 
  * ******************************************************************************************/
-	//computes # of documents within which each token appears, both
-	//within each category and overall (over all categories)
+	//computes # of documents within which each token appears over all categories
+	//(the per-category counts were already made once in stats)
 	private void computeTokenData() {
-		int t = 0;
-		for (String token: vocab.keys())
+		for (int t = 0; t < numVocab; t++)
 		{
-			int c = 0;
 			int totalDocs = 0;
-			for (String cat: masterTree.keys())
-			{
-				HashSet<HashMap<String, Integer>> curCat = masterTree.get(cat);
-				int docsWithToken = 0;
-				for (HashMap<String, Integer> curDoc: curCat)
-				{
-					if(curDoc.containsKey(token))
-						docsWithToken++;
-				}
-				tokenAppearanceDoc[t][c] = docsWithToken;
-				totalDocs += docsWithToken;
-				c++;
-			}
+			for (int c = 0; c < numCats; c++)
+				totalDocs += tokenAppearanceDoc[t][c];
 			tokenAppearance[t] = totalDocs;
-			t++;
 		}
 	}
 	
@@ -492,14 +1147,17 @@ public class NaiveBayesLearner {
  * ******************************************************************************************/	
 	//select top k features per category via either mutual information or chi^2
 	private void FeatureSelect(int k, char ch) {
-		Queue<Integer> selectIndex = new Queue<Integer>();
+		IntQueue selectIndex = new IntQueue(k*numCats);
+		catFeatureIds = new int[numCats][];
+		catFeatureScores = new double[numCats][];
+		double[] scores = new double[numVocab];
 		for (int c = 0; c < numCats; c++) {
 			MaxPQ <Score> featureRank = new MaxPQ<Score>();
 			for (int t = 0; t < numVocab; t++)
 			{
 				//System.out.println("Coordinates: " + t + ", " + c);
-				//System.out.println("Category: " + masterTree.select(c));
-				//System.out.println("Word: " + vocab.select(t));
+				//System.out.println("Category: " + stats.category(c));
+				//System.out.println("Word: " + stats.term(t));
 				double score;
 				
 				//collect token appearance data (think of the 2 by 2 grid)
@@ -521,26 +1179,41 @@ public class NaiveBayesLearner {
 				//save score with token
 				Score cur = new Score(t, score);
 				featureRank.insert(cur);
+				scores[t] = score;
 			}
-			String category = masterTree.select(c);
-			Queue<String> q = new Queue<String>();
-			catFeatures.put(category, q);
-			for (int i = 0; i < k; i++)
+			//the category's features are kept by their index in stats until the rows are known
+			int n = Math.min(k, numVocab);
+			catFeatureIds[c] = new int[n];
+			catFeatureScores[c] = new double[n];
+			for (int i = 0; i < n; i++)
 			{
 				Score del = featureRank.delMax();
 				int ind = del.getIndex();
 				selectIndex.enqueue(ind);
-				catFeatures.get(category).enqueue(vocab.select(ind));
+				catFeatureIds[c][i] = ind;
+				catFeatureScores[c][i] = scores[ind];
 			}
 		}
 		
-		//we may choose a better solution for this later
-		//puts selected vocabulary into a new red-black tree
-		for (int i: selectIndex)
+		//puts selected vocabulary into a new red-black tree; since stats keeps its terms sorted,
+		//the distinct selected indices in increasing order are the rows of selectVocab
+		int[] sorted = selectIndex.toArray();
+		Arrays.sort(sorted);
+		int rows = 0;
+		for (int i = 0; i < sorted.length; i++)
+		{
+			if (rows > 0 && sorted[rows-1] == sorted[i])
+				continue;
+			sorted[rows++] = sorted[i];
+			selectVocab.put(stats.term(sorted[i]), stats.termTotal(sorted[i]));
+		}
+		selectRows = Arrays.copyOf(sorted, rows);
+		
+		//every category's features are among the rows, so their term ids are their positions there
+		for (int[] ids: catFeatureIds)
 		{
-			String word = vocab.select(i);
-			int count = vocab.get(word);
-			selectVocab.put(word, count);
+			for (int i = 0; i < ids.length; i++)
+				ids[i] = Arrays.binarySearch(selectRows, ids[i]);
 		}
 	}
 	
@@ -601,55 +1274,42 @@ public class NaiveBayesLearner {
 	//compute total # of tokens per category
 	private void computeTokensPerCategory()
 	{
-		int i = 0;
-		for (String cat: masterTree.keys())
+		for (int r = 0; r < numVocabReduced; r++)
 		{
-			int count = 0;
-			for (HashMap<String, Integer> doc : masterTree.get(cat))
-			{
-				for (String token: doc.keySet())
-				{
-					if (selectVocab.contains(token))
-					{
-						count += doc.get(token);
-					}
-				}
-			} 
-			//System.out.println(count);
-			categoryTotalTokens[i] = count;
-			i++;
+			int[] occur = stats.termFreqTable()[selectRows[r]];
+			for (int c = 0; c < numCats; c++)
+				categoryTotalTokens[c] += occur[c];
 		}
 	}
 	
-	//likelihood function/posterior probability computation
+	//likelihood function/posterior probability computation: stores how many times each selected 
+	//token appears in each category, then derives the log likelihoods with additive (Lidstone)
+	//smoothing; alpha = 1 is the Laplace add-one estimate
 	private void computeProbabilities() {
-		int c = 0;
-		for (String cat: masterTree.keys())
+		for (int t = 0; t < numVocabReduced; t++)
 		{
-			int t = 0;
-			for (String word: selectVocab.keys())
-			{
-				int wordOccur = 0; //how many times does token t appear in category c?
-				for (HashMap<String, Integer> doc : masterTree.get(cat))
-				{
-					int wordOccurInDoc;
-					if (doc.containsKey(word))
-						wordOccurInDoc = doc.get(word);
-					else
-						wordOccurInDoc = 0;
-					wordOccur += wordOccurInDoc;
-				}
-				probabilities[t][c] = (double)(wordOccur + 1)/(categoryTotalTokens[c] + numVocabReduced);
-				//System.out.println(probabilities[t][c]);
-				t++;
-			}
-			c++;
+			int[] occur = stats.termFreqTable()[selectRows[t]]; //how many times does token t appear in category c?
+			for (int c = 0; c < numCats; c++)
+				classTermCounts.put(t*numCats + c, occur[c]);
+			
+			//smoothed inverse document frequency, from the token appearance data
+			idf[t] = Math.log((1.0 + numDocs)/(1.0 + tokenAppearance[selectRows[t]])) + 1;
 		}
+		setSmoothing(options.getSmoothing());
 	}
 	
 /*******************************************************************************************
  * Unit testing
  * ******************************************************************************************/
+	//the categories learned, in sorted order
+	public Iterable<String> categories()
+	{
+		Queue<String> q = new Queue<String>(numCats);
+		for (int c = 0; c < numCats; c++)
+			q.enqueue(categoryNames[c]);
+		return q;
+	}
+	
 	public void printData() 
 	{
 		System.out.println();
@@ -667,7 +1327,7 @@ public class NaiveBayesLearner {
 		System.out.println("------Selected Vocabulary------");
 		
 		int count = 1;
-		for (String word: selectVocab.keys())
+		for (String word: vocabTerms())
 		{
 			System.out.print(word + " ");
 			if (count == 15)
@@ -686,19 +1346,22 @@ public class NaiveBayesLearner {
 		System.out.println("------Prior Probability of Each Category-----");
 		for (int i = 0; i < numCats; i++)
 		{
-			System.out.println(masterTree.select(i) + ": " + prior[i]);
+			System.out.println(categoryNames[i] + ": " + prior[i]);
 		}
 		System.out.println();
 	}
 	
 	public void printCategoryFeatures()
 	{
-		for (String cat: catFeatures.keys())
+		if (catFeatureIds == null)
+			return;
+		for (int c = 0; c < numCats; c++)
 		{
-			System.out.println("Category: " + cat + " - ");
-			for (String t: catFeatures.get(cat))
+			System.out.println("Category: " + categoryNames[c] + " - ");
+			TopFeatures top = topFeatures(c, Integer.MAX_VALUE);
+			for (int i = 0; i < top.size(); i++)
 			{
-				System.out.print(t+ ", ");
+				System.out.print(top.term(i) + ", ");
 			}
 			System.out.println();
 		}
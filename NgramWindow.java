@@ -0,0 +1,97 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: LongIntMap.java
+ * 
+ * DESCRIPTION: The last few term ids of a token stream, from which the n-grams ending at the
+ * latest token are packed into long keys: the order n in bits 60-61, then the ids in the 60 
+ * bits below, 30 bits per id for bigrams and 20 bits per id for trigrams. With the order in 
+ * the key, a bigram and a trigram never share a key (without it, the trigram (1,0,5) and the 
+ * bigram (1024,5) would both pack to 2^42+5), so bigrams and trigrams can share one sketch 
+ * and one map. Used both when n-grams are counted in training and when they are looked up 
+ * during classification, so the two always agree on the keys.
+ **********************************************************************************************/
+
+class NgramWindow
+{
+	private final int[] ids;   //ids[ids.length-1] is the latest token, -1 marks an unknown term
+	private int seen;          //# of tokens pushed so far
+	
+	NgramWindow(int order)
+	{
+		ids = new int[order];
+	}
+	
+	int order()
+	{
+		return ids.length;
+	}
+	
+	//forgets all tokens, for the next token stream
+	void reset()
+	{
+		seen = 0;
+	}
+	
+	void push(int id)
+	{
+		System.arraycopy(ids, 1, ids, 0, ids.length - 1);
+		ids[ids.length - 1] = id;
+		seen++;
+	}
+	
+	//id of the i-th latest token (1 = latest)
+	int id(int i)
+	{
+		return ids[ids.length - i];
+	}
+	
+	//key of the n-gram ending at the latest token, or -1 if there is no such n-gram
+	//(fewer than n tokens so far, an unknown term, or an id too large to pack)
+	long key(int n)
+	{
+		if (seen < n)
+			return -1;
+		int bits = ID_BITS/n;
+		long key = 0;
+		for (int i = n; i >= 1; i--)
+		{
+			int id = id(i);
+			if (id < 0 || id >= (1 << bits))
+				return -1;
+			key = (key << bits) | id;
+		}
+		return ((long) n << ID_BITS) | key;
+	}
+	
+	private static final int ID_BITS = 60;   //bits of a key holding ids; the order is above them
+	
+	//usage: java NgramWindow
+	//checks that bigrams and trigrams which packed to the same key before the order was part of 
+	//it now get distinct keys, and so distinct rows in a map of n-gram rows
+	public static void main(String[] args)
+	{
+		int[][] grams = { {1, 0, 5}, {1024, 5}, {0, 1, 2}, {1, 2}, {(1 << 20) - 1, 0, 7}, {(1 << 20) - 1, 7} };
+		LongIntMap rows = new LongIntMap();
+		for (int row = 0; row < grams.length; row++)
+		{
+			NgramWindow w = new NgramWindow(grams[row].length);
+			for (int id: grams[row])
+				w.push(id);
+			rows.put(w.key(grams[row].length), row);
+		}
+		int collisions = 0;
+		for (int row = 0; row < grams.length; row++)
+		{
+			NgramWindow w = new NgramWindow(grams[row].length);
+			for (int id: grams[row])
+				w.push(id);
+			if (rows.get(w.key(grams[row].length), -1) != row)
+				collisions++;
+		}
+		System.out.println("N-grams: " + grams.length + ", rows: " + rows.size() + ", collisions: " + collisions);
+		if (collisions > 0 || rows.size() != grams.length)
+			throw new IllegalStateException("Bigram and trigram keys collide");
+	}
+}
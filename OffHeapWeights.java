@@ -0,0 +1,83 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: WritableWeights.java
+ *
+ * DESCRIPTION: Weight table in native memory outside the Java heap (a direct buffer), so a
+ * large model adds nothing to the heap the garbage collector scans and copies. The buffer is
+ * freed when the store becomes unreachable. Also has helpers for the model's count table, which
+ * is kept off-heap in a direct buffer or mapped straight from a model file. Every access goes
+ * through the buffer's bounds-checked absolute get/put. One buffer holds at most 2^31-1 bytes,
+ * i.e. about 268 million weights.
+ **********************************************************************************************/
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+public class OffHeapWeights implements WritableWeights {
+	private final DoubleBuffer w;
+
+	public OffHeapWeights(int size)
+	{
+		w = direct(8L*size).asDoubleBuffer();
+	}
+
+	public int size()                  { return w.capacity(); }
+	public double get(int i)           { return w.get(i); }
+	public void set(int i, double v)   { w.put(i, v); }
+
+	//the same blocking as ScoringKernel.accumulate, reading the weights from the buffer
+	public void accumulate(int numCats, int[] rows, double[] x, int n, double[] score)
+	{
+		DoubleBuffer w = this.w;
+		int i = 0;
+		for (; i + 3 < n; i += 4)
+		{
+			int b0 = rows[i]*numCats, b1 = rows[i + 1]*numCats, b2 = rows[i + 2]*numCats, b3 = rows[i + 3]*numCats;
+			double x0 = x[i], x1 = x[i + 1], x2 = x[i + 2], x3 = x[i + 3];
+			for (int c = 0; c < numCats; c++)
+				score[c] += x0*w.get(b0 + c) + x1*w.get(b1 + c) + x2*w.get(b2 + c) + x3*w.get(b3 + c);
+		}
+		for (; i < n; i++)
+		{
+			int b = rows[i]*numCats;
+			double xi = x[i];
+			for (int c = 0; c < numCats; c++)
+				score[c] += xi*w.get(b + c);
+		}
+	}
+
+	//an off-heap table of size ints (zeroed)
+	static IntBuffer directInts(int size)
+	{
+		return direct(4L*size).asIntBuffer();
+	}
+
+	//size big-endian ints of a file starting at byte offset, mapped read-only into memory
+	//(the file can be closed and the mapping stays valid until it is unreachable)
+	static IntBuffer mapInts(String fileName, long offset, int size) throws IOException
+	{
+		RandomAccessFile f = new RandomAccessFile(fileName, "r");
+		try
+		{
+			return f.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, 4L*size).order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+		}
+		finally
+		{
+			f.close();
+		}
+	}
+
+	private static ByteBuffer direct(long bytes)
+	{
+		if (bytes > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Table too large for one buffer: " + bytes + " bytes");
+		return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+	}
+}
@@ -0,0 +1,571 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: TokenStemmer.java, Stemmer.java
+ *
+ * DESCRIPTION: The Porter2 ("Snowball English") stemmer, giving the same stems as the English
+ * stemmer of Snowball and Lucene's SnowballFilter. Expects lower-case tokens. Each step's
+ * suffixes are compiled once into a reversed trie, so a step finds its longest matching suffix
+ * in one walk backwards from the end of the token, and its rule (replacement and condition)
+ * is then one switch; no Strings are compared or created. R1 and R2 are kept as indices
+ * into the token buffer, as in Snowball.
+ **********************************************************************************************/
+
+import java.util.Arrays;
+
+public class Porter2Stemmer implements TokenStemmer {
+	private char[] b = new char[50];
+	private int added;     //chars added for the next token
+	private int len;       //length of the token being stemmed, then of its stem
+	private int p1, p2;    //R1 = b[p1, len), R2 = b[p2, len)
+
+	public void add(char[] w, int off, int len)
+	{
+		if (added + len > b.length)
+			b = Arrays.copyOf(b, added + len + 50);
+		System.arraycopy(w, off, b, added, len);
+		added += len;
+	}
+
+	public char[] getResultBuffer()   { return b; }
+	public int getResultLength()      { return len; }
+
+	public void stem()
+	{
+		len = added;
+		added = 0;
+		if (exception1() || len < 3)
+			return;
+		prelude();
+		markRegions();
+		step1a();
+		if (!EXCEPTION2.matchesWhole(b, len))
+		{
+			step1b();
+			step1c();
+			suffixStep(STEP2, p1);
+			suffixStep(STEP3, p1);
+			suffixStep(STEP4, p2);
+			step5();
+		}
+		for (int i = 0; i < len; i++)
+		{
+			if (b[i] == 'Y')
+				b[i] = 'y';
+		}
+	}
+
+/********************************************************************************************
+ * Suffix rules: what replaces a suffix, and when
+ * ******************************************************************************************/
+	private static final int REPLACE = 0;          //replace the suffix
+	private static final int AFTER_L = 1;          //... if it follows an 'l'
+	private static final int AFTER_LI_ENDING = 2;  //... if it follows one of c d e g h k m n r t
+	private static final int IN_R2 = 3;            //... if it is in R2
+	private static final int AFTER_S_OR_T = 4;     //... if it follows an 's' or a 't'
+	private static final int KEEP = 5;             //leave the word alone
+	private static final int IES = 6;              //ied, ies: i after 2+ letters, else ie
+	private static final int PLURAL_S = 7;         //s: deleted after a vowel that does not end the stem
+	private static final int EED = 8;              //eed, eedly: ee in R1
+	private static final int ED = 9;               //ed, ing ...: deleted after a vowel, then the stem fixed up
+
+	private static final Rules APOSTROPHE = new Rules().add("'", "", REPLACE).add("'s", "", REPLACE).add("'s'", "", REPLACE);
+
+	private static final Rules STEP1A = new Rules().add("sses", "ss", REPLACE).add("ied", null, IES).add("ies", null, IES)
+			.add("s", "", PLURAL_S).add("us", null, KEEP).add("ss", null, KEEP);
+
+	private static final Rules STEP1B = new Rules().add("eed", "ee", EED).add("eedly", "ee", EED)
+			.add("ed", "", ED).add("edly", "", ED).add("ing", "", ED).add("ingly", "", ED);
+
+	private static final Rules STEP2 = new Rules()
+			.add("tional", "tion", REPLACE).add("enci", "ence", REPLACE).add("anci", "ance", REPLACE)
+			.add("abli", "able", REPLACE).add("entli", "ent", REPLACE).add("izer", "ize", REPLACE)
+			.add("ization", "ize", REPLACE).add("ational", "ate", REPLACE).add("ation", "ate", REPLACE)
+			.add("ator", "ate", REPLACE).add("alism", "al", REPLACE).add("aliti", "al", REPLACE)
+			.add("alli", "al", REPLACE).add("fulness", "ful", REPLACE).add("ousli", "ous", REPLACE)
+			.add("ousness", "ous", REPLACE).add("iveness", "ive", REPLACE).add("iviti", "ive", REPLACE)
+			.add("biliti", "ble", REPLACE).add("bli", "ble", REPLACE).add("ogi", "og", AFTER_L)
+			.add("fulli", "ful", REPLACE).add("lessli", "less", REPLACE).add("li", "", AFTER_LI_ENDING);
+
+	private static final Rules STEP3 = new Rules()
+			.add("tional", "tion", REPLACE).add("ational", "ate", REPLACE).add("alize", "al", REPLACE)
+			.add("icate", "ic", REPLACE).add("iciti", "ic", REPLACE).add("ical", "ic", REPLACE)
+			.add("ful", "", REPLACE).add("ness", "", REPLACE).add("ative", "", IN_R2);
+
+	private static final Rules STEP4 = new Rules();
+	static {
+		for (String s: new String[] { "al", "ance", "ence", "er", "ic", "able", "ible", "ant", "ement",
+				"ment", "ent", "ism", "ate", "iti", "ous", "ive", "ize" })
+			STEP4.add(s, "", REPLACE);
+		STEP4.add("ion", "", AFTER_S_OR_T);
+	}
+
+	//whole words with a fixed stem, and those left alone after step 1a
+	private static final Rules EXCEPTION1 = new Rules()
+			.add("skis", "ski", REPLACE).add("skies", "sky", REPLACE).add("dying", "die", REPLACE)
+			.add("lying", "lie", REPLACE).add("tying", "tie", REPLACE).add("idly", "idl", REPLACE)
+			.add("gently", "gentl", REPLACE).add("ugly", "ugli", REPLACE).add("early", "earli", REPLACE)
+			.add("only", "onli", REPLACE).add("singly", "singl", REPLACE).add("sky", null, KEEP)
+			.add("news", null, KEEP).add("howe", null, KEEP).add("atlas", null, KEEP).add("cosmos", null, KEEP)
+			.add("bias", null, KEEP).add("andes", null, KEEP);
+
+	private static final Rules EXCEPTION2 = new Rules().add("inning", null, KEEP).add("outing", null, KEEP)
+			.add("canning", null, KEEP).add("herring", null, KEEP).add("earring", null, KEEP)
+			.add("proceed", null, KEEP).add("exceed", null, KEEP).add("succeed", null, KEEP);
+
+/********************************************************************************************
+ * Steps
+ * ******************************************************************************************/
+	private boolean exception1()
+	{
+		int r = EXCEPTION1.match(b, len);
+		if (r < 0 || EXCEPTION1.length(r) != len)
+			return false;
+		if (EXCEPTION1.action(r) == REPLACE)
+			replace(EXCEPTION1, r, 0);
+		return true;
+	}
+
+	//drops a leading apostrophe and marks the y's that act as consonants (initial, or after a vowel) as Y
+	private void prelude()
+	{
+		if (b[0] == '\'')
+		{
+			System.arraycopy(b, 1, b, 0, --len);
+			if (len == 0)
+				return;
+		}
+		if (b[0] == 'y')
+			b[0] = 'Y';
+		for (int i = 1; i < len; i++)
+		{
+			if (b[i] == 'y' && isVowel(b[i - 1]))
+				b[i] = 'Y';
+		}
+	}
+
+	//R1 starts after the first non-vowel following a vowel (or after gener, commun, arsen), and
+	//R2 the same way within R1
+	private void markRegions()
+	{
+		p1 = p2 = len;
+		int i;
+		if (startsWith("gener") || startsWith("arsen"))
+			i = 5;
+		else if (startsWith("commun"))
+			i = 6;
+		else
+			i = afterVowelAndConsonant(0);
+		if (i < 0)
+			return;
+		p1 = i;
+		i = afterVowelAndConsonant(i);
+		if (i >= 0)
+			p2 = i;
+	}
+
+	private void step1a()
+	{
+		int r = APOSTROPHE.match(b, len);
+		if (r >= 0)
+			len -= APOSTROPHE.length(r);
+
+		r = STEP1A.match(b, len);
+		if (r < 0)
+			return;
+		int start = len - STEP1A.length(r);
+		switch (STEP1A.action(r))
+		{
+			case REPLACE:
+				replace(STEP1A, r, start);
+				break;
+			case IES:
+				len = start;
+				append((start >= 2) ? "i" : "ie");
+				break;
+			case PLURAL_S:
+				if (start >= 1 && hasVowel(0, start - 1))
+					len = start;
+				break;
+		}
+	}
+
+	private void step1b()
+	{
+		int r = STEP1B.match(b, len);
+		if (r < 0)
+			return;
+		int start = len - STEP1B.length(r);
+		if (STEP1B.action(r) == EED)
+		{
+			if (start >= p1)
+				replace(STEP1B, r, start);
+			return;
+		}
+		if (!hasVowel(0, start))
+			return;
+		len = start;
+
+		//at, bl, iz get an e back, a double consonant is undoubled, and a short word gets an e
+		char x = (len >= 2) ? b[len - 2] : 0;
+		char y = (len >= 1) ? b[len - 1] : 0;
+		if ((x == 'a' && y == 't') || (x == 'b' && y == 'l') || (x == 'i' && y == 'z'))
+			append("e");
+		else if (x == y && isDoubleEnding(y))
+			len--;
+		else if (len == p1 && endsInShortSyllable(len))
+			append("e");
+	}
+
+	//y or Y after a non-vowel that is not the first letter becomes i
+	private void step1c()
+	{
+		if (len >= 3 && (b[len - 1] == 'y' || b[len - 1] == 'Y') && !isVowel(b[len - 2]))
+			b[len - 1] = 'i';
+	}
+
+	//steps 2 to 4: the longest suffix of the step, if it is in the region and its rule allows it
+	private void suffixStep(Rules rules, int region)
+	{
+		int r = rules.match(b, len);
+		if (r < 0)
+			return;
+		int start = len - rules.length(r);
+		if (start < region)
+			return;
+		char before = (start > 0) ? b[start - 1] : 0;
+		switch (rules.action(r))
+		{
+			case AFTER_L:
+				if (before != 'l')
+					return;
+				break;
+			case AFTER_LI_ENDING:
+				if (!isLiEnding(before))
+					return;
+				break;
+			case IN_R2:
+				if (start < p2)
+					return;
+				break;
+			case AFTER_S_OR_T:
+				if (before != 's' && before != 't')
+					return;
+				break;
+		}
+		replace(rules, r, start);
+	}
+
+	//a final e in R2, or in R1 and not after a short syllable, and a final l after l in R2, are deleted
+	private void step5()
+	{
+		if (len == 0)
+			return;
+		int s = len - 1;
+		if (b[s] == 'e')
+		{
+			if (s >= p2 || (s >= p1 && !endsInShortSyllable(s)))
+				len--;
+		}
+		else if (b[s] == 'l')
+		{
+			if (s >= p2 && s > 0 && b[s - 1] == 'l')
+				len--;
+		}
+	}
+
+/********************************************************************************************
+ * Helpers
+ * ******************************************************************************************/
+	private static boolean isVowel(char c)
+	{
+		switch (c)
+		{
+			case 'a': case 'e': case 'i': case 'o': case 'u': case 'y':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isDoubleEnding(char c)
+	{
+		switch (c)
+		{
+			case 'b': case 'd': case 'f': case 'g': case 'm': case 'n': case 'p': case 'r': case 't':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isLiEnding(char c)
+	{
+		switch (c)
+		{
+			case 'c': case 'd': case 'e': case 'g': case 'h': case 'k': case 'm': case 'n': case 'r': case 't':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	//does b[0, end) end in a short syllable: non-vowel, vowel, then a non-vowel other than w, x
+	//or Y; or, for the whole of a two-letter stem, vowel then non-vowel?
+	private boolean endsInShortSyllable(int end)
+	{
+		if (end >= 3)
+		{
+			char c = b[end - 1];
+			return !isVowel(c) && c != 'w' && c != 'x' && c != 'Y' && isVowel(b[end - 2]) && !isVowel(b[end - 3]);
+		}
+		return end == 2 && isVowel(b[0]) && !isVowel(b[1]);
+	}
+
+	private boolean hasVowel(int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			if (isVowel(b[i]))
+				return true;
+		}
+		return false;
+	}
+
+	//index just after the first non-vowel that follows a vowel at or after from, or -1
+	private int afterVowelAndConsonant(int from)
+	{
+		int i = from;
+		while (i < len && !isVowel(b[i]))
+			i++;
+		while (i < len && isVowel(b[i]))
+			i++;
+		return (i < len) ? i + 1 : -1;
+	}
+
+	private boolean startsWith(String prefix)
+	{
+		if (len < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+		{
+			if (b[i] != prefix.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	//replaces b[start, len) by the replacement of rule r
+	private void replace(Rules rules, int r, int start)
+	{
+		len = start;
+		append(rules.replacement(r));
+	}
+
+	private void append(String s)
+	{
+		if (len + s.length() > b.length)
+			b = Arrays.copyOf(b, len + s.length() + 50);
+		s.getChars(0, s.length(), b, len);
+		len += s.length();
+	}
+
+/********************************************************************************************
+ * Rules: suffixes compiled into a trie of their reversed chars, so the longest suffix of a
+ * word in the set is found in one walk from the word's last char backwards
+ * ******************************************************************************************/
+	private static final class Rules {
+		private static final int SYMBOLS = 29;   //none, a-z, apostrophe, Y
+
+		private int[] next = new int[SYMBOLS];   //next[node*SYMBOLS + symbol] = child node, 0 if none
+		private int[] rule = { -1 };             //rule of the suffix ending at each node, -1 if none
+		private int nodes = 1;
+		private final String[] suffix = new String[32];
+		private final String[] replacement = new String[32];
+		private final int[] action = new int[32];
+		private int rules = 0;
+
+		Rules add(String s, String replaceWith, int act)
+		{
+			int node = 0;
+			for (int i = s.length() - 1; i >= 0; i--)
+			{
+				int k = node*SYMBOLS + symbol(s.charAt(i));
+				if (next[k] == 0)
+				{
+					if ((nodes + 1)*SYMBOLS > next.length)
+					{
+						next = Arrays.copyOf(next, 2*next.length);
+						rule = Arrays.copyOf(rule, 2*rule.length);
+					}
+					rule[nodes] = -1;
+					next[k] = nodes++;
+				}
+				node = next[k];
+			}
+			rule[node] = rules;
+			suffix[rules] = s;
+			replacement[rules] = replaceWith;
+			action[rules] = act;
+			rules++;
+			return this;
+		}
+
+		//the rule of the longest suffix of b[0, len) in the set, or -1
+		int match(char[] b, int len)
+		{
+			int node = 0, found = -1;
+			for (int i = len - 1; i >= 0; i--)
+			{
+				int c = symbol(b[i]);
+				if (c == 0 || (node = next[node*SYMBOLS + c]) == 0)
+					break;
+				if (rule[node] >= 0)
+					found = rule[node];
+			}
+			return found;
+		}
+
+		boolean matchesWhole(char[] b, int len)
+		{
+			int r = match(b, len);
+			return r >= 0 && suffix[r].length() == len;
+		}
+
+		int length(int r)             { return suffix[r].length(); }
+		String replacement(int r)     { return replacement[r]; }
+		int action(int r)             { return action[r]; }
+
+		private static int symbol(char c)
+		{
+			if (c >= 'a' && c <= 'z')
+				return c - 'a' + 1;
+			if (c == '\'')
+				return 27;
+			return (c == 'Y') ? 28 : 0;
+		}
+	}
+
+/********************************************************************************************
+ * Check and benchmark
+ * ******************************************************************************************/
+	//words of the Snowball English sample vocabulary and their Porter2 stems, plus the special cases
+	private static final String[] SAMPLE = {
+		"consign", "consign", "consigned", "consign", "consigning", "consign", "consignment", "consign",
+		"consist", "consist", "consisted", "consist", "consistency", "consist", "consistent", "consist",
+		"consistently", "consist", "consisting", "consist", "consists", "consist", "consolation", "consol",
+		"consolations", "consol", "consolatory", "consolatori", "console", "consol", "consoled", "consol",
+		"consoles", "consol", "consolidate", "consolid", "consolidated", "consolid", "consolidating", "consolid",
+		"consoling", "consol", "consolingly", "consol", "consols", "consol", "consonant", "conson",
+		"consort", "consort", "consorted", "consort", "consorting", "consort", "conspicuous", "conspicu",
+		"conspicuously", "conspicu", "conspiracy", "conspiraci", "conspirator", "conspir", "conspirators", "conspir",
+		"conspire", "conspir", "conspired", "conspir", "conspiring", "conspir", "constable", "constabl",
+		"constables", "constabl", "constance", "constanc", "constancy", "constanc", "constant", "constant",
+		"knack", "knack", "knackeries", "knackeri", "knacks", "knack", "knag", "knag", "knave", "knave",
+		"knaves", "knave", "knavish", "knavish", "kneaded", "knead", "kneading", "knead", "knee", "knee",
+		"kneel", "kneel", "kneeled", "kneel", "kneeling", "kneel", "kneels", "kneel", "knees", "knee",
+		"knell", "knell", "knelt", "knelt", "knew", "knew", "knick", "knick", "knif", "knif", "knife", "knife",
+		"knight", "knight", "knightly", "knight", "knights", "knight", "knit", "knit", "knits", "knit",
+		"knitted", "knit", "knitting", "knit", "knives", "knive", "knob", "knob", "knobs", "knob",
+		"knock", "knock", "knocked", "knock", "knocker", "knocker", "knockers", "knocker", "knocking", "knock",
+		"knocks", "knock", "knopp", "knopp", "knot", "knot", "knots", "knot",
+		"skis", "ski", "skies", "sky", "dying", "die", "lying", "lie", "tying", "tie", "idly", "idl",
+		"gently", "gentl", "ugly", "ugli", "early", "earli", "only", "onli", "singly", "singl", "sky", "sky",
+		"news", "news", "howe", "howe", "atlas", "atlas", "cosmos", "cosmos", "bias", "bias", "andes", "andes",
+		"inning", "inning", "outings", "outing", "cannings", "canning", "herrings", "herring", "earrings", "earring",
+		"proceed", "proceed", "exceeds", "exceed", "succeeded", "succeed", "generously", "generous",
+		"communication", "communic", "arsenal", "arsenal", "caresses", "caress", "ponies", "poni", "ties", "tie",
+		"cries", "cri", "gas", "gas", "gaps", "gap", "kiwis", "kiwi", "luxuriated", "luxuri", "hopping", "hop",
+		"hoping", "hope", "agreed", "agre", "feed", "feed", "cry", "cri", "by", "by", "say", "say", "'tis", "tis",
+		"youth's", "youth", "yelled", "yell", "sayings", "say"
+	};
+
+	//usage: java Porter2Stemmer [vocabularyFile stemsFile] [trainFile]
+	//checks the stemmer against a word list (e.g. Snowball's voc.txt and output.txt, one word per
+	//line; by default a built-in sample), then compares its speed with Stemmer (Porter) on the
+	//words of the list, or on the tokens of a Reuters file cleaned without stemming
+	public static void main(String[] args) throws java.io.IOException
+	{
+		final java.util.List<String> words = new java.util.ArrayList<String>();
+		java.util.List<String> stems = new java.util.ArrayList<String>();
+		if (args.length >= 2)
+		{
+			words.addAll(java.nio.file.Files.readAllLines(java.nio.file.Paths.get(args[0]), java.nio.charset.StandardCharsets.UTF_8));
+			stems.addAll(java.nio.file.Files.readAllLines(java.nio.file.Paths.get(args[1]), java.nio.charset.StandardCharsets.UTF_8));
+		}
+		else
+		{
+			for (int i = 0; i < SAMPLE.length; i += 2)
+			{
+				words.add(SAMPLE[i]);
+				stems.add(SAMPLE[i + 1]);
+			}
+		}
+		Porter2Stemmer p2 = new Porter2Stemmer();
+		int wrong = 0;
+		for (int i = 0; i < words.size(); i++)
+		{
+			String stem = stem(p2, words.get(i));
+			if (!stem.equals(stems.get(i)))
+			{
+				if (wrong++ < 20)
+					System.out.println(words.get(i) + ": " + stem + ", expected " + stems.get(i));
+			}
+		}
+		System.out.printf("Stems: %d, wrong: %d, accuracy %.4f%n", words.size(), wrong, 1 - (double) wrong/words.size());
+
+		if (args.length % 2 == 1)
+		{
+			words.clear();
+			final TextPipeline unstemmed = TextPipeline.REUTERS.toBuilder().stem(false).build();
+			CorpusReader.readReuters(args[args.length - 1], new DocumentHandler() {
+				public void document(String[] cats, String text) {
+					unstemmed.tokenize(text, new TokenHandler() {
+						public void token(char[] buf, int off, int len) { words.add(new String(buf, off, len)); }
+					});
+				}
+			});
+		}
+		char[][] tokens = new char[words.size()][];
+		for (int i = 0; i < tokens.length; i++)
+			tokens[i] = words.get(i).toCharArray();
+		int reps = Math.max(1, 2000000/Math.max(1, tokens.length));
+		TokenStemmer porter = new Stemmer();
+		long sink = 0;
+		for (int round = 0; round < 5; round++)
+		{
+			long t0 = System.nanoTime();
+			sink += stemAll(porter, tokens, reps);
+			long t1 = System.nanoTime();
+			sink += stemAll(p2, tokens, reps);
+			long t2 = System.nanoTime();
+			System.out.printf("Stemmer %.1fns/token   Porter2Stemmer %.1fns/token%n",
+					(t1 - t0)/(double) reps/tokens.length, (t2 - t1)/(double) reps/tokens.length);
+		}
+		if (sink == 42)
+			System.out.println();
+	}
+
+	private static String stem(TokenStemmer s, String word)
+	{
+		s.add(word.toCharArray(), 0, word.length());
+		s.stem();
+		return new String(s.getResultBuffer(), 0, s.getResultLength());
+	}
+
+	private static long stemAll(TokenStemmer s, char[][] tokens, int reps)
+	{
+		long n = 0;
+		for (int r = 0; r < reps; r++)
+		{
+			for (char[] t: tokens)
+			{
+				s.add(t, 0, t.length);
+				s.stem();
+				n += s.getResultLength();
+			}
+		}
+		return n;
+	}
+}
@@ -0,0 +1,248 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: WeightStore.java, NaiveBayesLearner.java, LearnerOptions.java, CorpusReader.java,
+ * DocumentHandler.java
+ *
+ * DESCRIPTION: Read-only weight table with every weight quantized to an 8 or 16 bit code.
+ * Each category has its own scale: the weights of category c are spread linearly between the
+ * smallest and largest weight of that category, so weight(t, c) = min[c] + code(t, c)*step[c]
+ * and the error of one weight is at most step[c]/2. Codes are never expanded back into a table
+ * of doubles; accumulate sums x * code per category and applies the scale once at the end:
+ *     sum of x*(min + code*step) = min*(sum of x) + step*(sum of x*code)
+ * The smallest weight of each category (e.g. the weight of every token never seen in it) is
+ * stored exactly, as code 0.
+ **********************************************************************************************/
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class QuantizedWeights implements WeightStore {
+	private final int bits;         //8 or 16
+	private final int numCats;
+	private final double[] min;     //per category: weight of code 0
+	private final double[] step;    //per category: weight difference between neighbouring codes
+	private final byte[] codes8;    //bits == 8: unsigned codes, row-major like the weights
+	private final short[] codes16;  //bits == 16: unsigned codes, row-major like the weights
+
+	//per-thread sums of x * code of accumulate, so scoring allocates nothing
+	private final ThreadLocal<double[]> dots = new ThreadLocal<double[]>() {
+		protected double[] initialValue() { return new double[numCats]; }
+	};
+
+	private QuantizedWeights(int bits, int numCats, double[] min, double[] step, byte[] codes8, short[] codes16)
+	{
+		this.bits = bits;
+		this.numCats = numCats;
+		this.min = min;
+		this.step = step;
+		this.codes8 = codes8;
+		this.codes16 = codes16;
+	}
+
+	//quantizes a row-major table of numCats weights per row to 8 or 16 bits per weight
+	public static QuantizedWeights quantize(WeightStore w, int numCats, int bits)
+	{
+		if (bits != 8 && bits != 16)
+			throw new IllegalArgumentException("Weights can be quantized to 8 or 16 bits, not " + bits);
+		double[] min = new double[numCats];
+		double[] max = new double[numCats];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		for (int i = 0; i < w.size(); i++)
+		{
+			int c = i % numCats;
+			min[c] = Math.min(min[c], w.get(i));
+			max[c] = Math.max(max[c], w.get(i));
+		}
+
+		int levels = (1 << bits) - 1;
+		double[] step = new double[numCats];
+		for (int c = 0; c < numCats; c++)
+		{
+			if (min[c] > max[c])   //no rows
+				min[c] = max[c] = 0;
+			step[c] = (max[c] > min[c]) ? (max[c] - min[c])/levels : 0;
+		}
+
+		byte[] codes8 = (bits == 8) ? new byte[w.size()] : null;
+		short[] codes16 = (bits == 16) ? new short[w.size()] : null;
+		for (int i = 0; i < w.size(); i++)
+		{
+			int c = i % numCats;
+			int code = (step[c] > 0) ? (int) Math.round((w.get(i) - min[c])/step[c]) : 0;
+			code = Math.max(0, Math.min(levels, code));
+			if (bits == 8)
+				codes8[i] = (byte) code;
+			else
+				codes16[i] = (short) code;
+		}
+		return new QuantizedWeights(bits, numCats, min, step, codes8, codes16);
+	}
+
+	public int bits()                  { return bits; }
+
+	public int size()
+	{
+		return (bits == 8) ? codes8.length : codes16.length;
+	}
+
+	public double get(int i)
+	{
+		int c = i % numCats;
+		return min[c] + code(i)*step[c];
+	}
+
+	public void accumulate(int numCats, int[] rows, double[] x, int n, double[] score)
+	{
+		if (numCats != this.numCats)
+			throw new IllegalArgumentException("Weights were quantized for " + this.numCats + " categories, not " + numCats);
+		double[] dot = dots.get();
+		Arrays.fill(dot, 0);
+		double xSum = 0;
+		if (bits == 8)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				int b = rows[i]*numCats;
+				double xi = x[i];
+				for (int c = 0; c < numCats; c++)
+					dot[c] += xi*(codes8[b + c] & 0xff);
+				xSum += xi;
+			}
+		}
+		else
+		{
+			for (int i = 0; i < n; i++)
+			{
+				int b = rows[i]*numCats;
+				double xi = x[i];
+				for (int c = 0; c < numCats; c++)
+					dot[c] += xi*(codes16[b + c] & 0xffff);
+				xSum += xi;
+			}
+		}
+		for (int c = 0; c < numCats; c++)
+			score[c] += min[c]*xSum + step[c]*dot[c];
+	}
+
+	private int code(int i)
+	{
+		return (bits == 8) ? (codes8[i] & 0xff) : (codes16[i] & 0xffff);
+	}
+
+/*******************************************************************************************
+ * File format: bits, numCats, # of codes, (min, step) per category, the codes
+ * ******************************************************************************************/
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(bits);
+		out.writeInt(numCats);
+		out.writeInt(size());
+		for (int c = 0; c < numCats; c++)
+		{
+			out.writeDouble(min[c]);
+			out.writeDouble(step[c]);
+		}
+		if (bits == 8)
+			out.write(codes8);
+		else
+		{
+			for (short s: codes16)
+				out.writeShort(s);
+		}
+	}
+
+	public static QuantizedWeights readFrom(DataInputStream in) throws IOException
+	{
+		int bits = in.readInt();
+		int numCats = in.readInt();
+		int size = in.readInt();
+		if ((bits != 8 && bits != 16) || numCats <= 0 || size < 0 || size % numCats != 0)
+			throw new IOException("Corrupt quantized weights");
+		double[] min = new double[numCats];
+		double[] step = new double[numCats];
+		for (int c = 0; c < numCats; c++)
+		{
+			min[c] = in.readDouble();
+			step[c] = in.readDouble();
+		}
+		byte[] codes8 = null;
+		short[] codes16 = null;
+		if (bits == 8)
+		{
+			codes8 = new byte[size];
+			in.readFully(codes8);
+		}
+		else
+		{
+			codes16 = new short[size];
+			for (int i = 0; i < size; i++)
+				codes16[i] = in.readShort();
+		}
+		return new QuantizedWeights(bits, numCats, min, step, codes8, codes16);
+	}
+
+	//usage: java QuantizedWeights trainFile testFile [features] [maxAccuracyDrop]
+	//trains a full-precision model on a Reuters file, exports it at 16 and 8 bits and checks that
+	//neither compressed model loses more than maxAccuracyDrop (default 0.01) accuracy on the test file
+	public static void main(String[] args) throws IOException
+	{
+		int features = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+		double maxDrop = (args.length > 3) ? Double.parseDouble(args[3]) : 0.01;
+		final List<String> texts = new ArrayList<String>();
+		final List<String[]> labels = new ArrayList<String[]>();
+		CorpusReader.readReuters(args[1], new DocumentHandler() {
+			public void document(String[] cats, String text) {
+				texts.add(text);
+				labels.add(cats);
+			}
+		});
+
+		boolean ok = true;
+		for (LearnerOptions.Scoring scoring: LearnerOptions.Scoring.values())
+		{
+			NaiveBayesLearner full = new NaiveBayesLearner(args[0], 'R', 'C', features, new LearnerOptions().scoring(scoring));
+			String[] fullGuess = new String[texts.size()];
+			double fullAcc = 0;
+			for (int d = 0; d < texts.size(); d++)
+			{
+				fullGuess[d] = full.classify(texts.get(d));
+				if (Arrays.asList(labels.get(d)).contains(fullGuess[d]))
+					fullAcc++;
+			}
+			fullAcc /= texts.size();
+
+			for (int bits: new int[] {16, 8})
+			{
+				File f = File.createTempFile("model", ".nbq");
+				f.deleteOnExit();
+				full.saveCompressed(f.getPath(), bits);
+				NaiveBayesLearner small = NaiveBayesLearner.loadCompressed(f.getPath());
+				double acc = 0;
+				int agree = 0;
+				for (int d = 0; d < texts.size(); d++)
+				{
+					String guess = small.classify(texts.get(d));
+					if (Arrays.asList(labels.get(d)).contains(guess))
+						acc++;
+					if (guess.equals(fullGuess[d]))
+						agree++;
+				}
+				acc /= texts.size();
+				boolean pass = fullAcc - acc <= maxDrop;
+				ok &= pass;
+				System.out.printf("%-11s %2d bits: %7d bytes, accuracy %.4f (full %.4f), same guess %d/%d %s%n", scoring, bits,
+						f.length(), acc, fullAcc, agree, texts.size(), pass ? "" : "  ACCURACY DROP TOO LARGE");
+			}
+		}
+		if (!ok)
+			System.exit(1);
+	}
+}
@@ -2,11 +2,11 @@ package classifier;
 /*************************************************************************
  *  Compilation:  javac Queue.java
  *  Execution:    java Queue < input.txt
- *  Data files:   http://algs4.cs.princeton.edu/13stacks/tobe.txt  
+ *  Data files:   http://algs4.cs.princeton.edu/13stacks/tobe.txt
  *
- *  A generic queue, implemented using a linked list.
+ *  A generic queue, implemented using a resizing circular array.
  *
- *  % java Queue < tobe.txt 
+ *  % java Queue < tobe.txt
  *  to be or not to be (2 left on queue)
  *
  *************************************************************************/
@@ -22,11 +22,16 @@ import java.util.NoSuchElementException;
  *  testing if the queue is empty, and iterating through
  *  the items in FIFO order.
  *  <p>
- *  This implementation uses a singly-linked list with a static nested class for
- *  linked-list nodes. See {@link LinkedQueue} for the version from the
- *  textbook that uses a non-static nested class.
- *  The <em>enqueue</em>, <em>dequeue</em>, <em>peek</em>, <em>size</em>, and <em>is-empty</em>
- *  operations all take constant time in the worst case.
+ *  This implementation uses a resizing circular array (ring buffer) whose
+ *  capacity is always a power of two, so wrapping an index is a single mask
+ *  and no node is allocated per <em>enqueue</em>. The <em>clear</em> operation
+ *  keeps the backing array so that a hot path can recycle one instance
+ *  instead of allocating a new queue per call.
+ *  The <em>dequeue</em>, <em>peek</em>, <em>size</em>, and <em>is-empty</em>
+ *  operations take constant time in the worst case; <em>enqueue</em> takes
+ *  constant amortized time.
+ *  <p>
+ *  See {@link IntQueue} and {@link LongQueue} for the primitive variants.
  *  <p>
  *  For additional documentation, see <a href="http://algs4.cs.princeton.edu/13stacks">Section 1.3</a> of
  *  <i>Algorithms, 4th Edition</i> by Robert Sedgewick and Kevin Wayne.
@@ -35,22 +40,30 @@ import java.util.NoSuchElementException;
  *  @author Kevin Wayne
  */
 public class Queue<Item> implements Iterable<Item> {
-    private int N;               // number of elements on queue
-    private Node<Item> first;    // beginning of queue
-    private Node<Item> last;     // end of queue
+    private static final int INIT_CAPACITY = 8;
 
-    // helper linked list class
-    private static class Node<Item> {
-        private Item item;
-        private Node<Item> next;
-    }
+    private Item[] q;            // queue elements
+    private int N;               // number of elements on queue
+    private int first;           // index of first element of queue
+    private int mask;            // q.length - 1, q.length is a power of two
 
     /**
      * Initializes an empty queue.
      */
     public Queue() {
-        first = null;
-        last  = null;
+        this(INIT_CAPACITY);
+    }
+
+    /**
+     * Initializes an empty queue able to hold <tt>capacity</tt> items before resizing.
+     * @param capacity the initial capacity, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public Queue(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Negative capacity");
+        q = (Item[]) new Object[powerOfTwo(capacity)];
+        mask = q.length - 1;
+        first = 0;
         N = 0;
     }
 
@@ -59,7 +72,7 @@ public class Queue<Item> implements Iterable<Item> {
      * @return true if this queue is empty; false otherwise
      */
     public boolean isEmpty() {
-        return first == null;
+        return N == 0;
     }
 
     /**
@@ -67,7 +80,7 @@ public class Queue<Item> implements Iterable<Item> {
      * @return the number of items in this queue
      */
     public int size() {
-        return N;     
+        return N;
     }
 
     /**
@@ -77,7 +90,7 @@ public class Queue<Item> implements Iterable<Item> {
      */
     public Item peek() {
         if (isEmpty()) throw new NoSuchElementException("Queue underflow");
-        return first.item;
+        return q[first];
     }
 
     /**
@@ -85,12 +98,8 @@ public class Queue<Item> implements Iterable<Item> {
      * @param item the item to add
      */
     public void enqueue(Item item) {
-        Node<Item> oldlast = last;
-        last = new Node<Item>();
-        last.item = item;
-        last.next = null;
-        if (isEmpty()) first = last;
-        else           oldlast.next = last;
+        if (N == q.length) resize(2*q.length);   // double size of array if necessary
+        q[(first + N) & mask] = item;
         N++;
     }
 
@@ -101,13 +110,44 @@ public class Queue<Item> implements Iterable<Item> {
      */
     public Item dequeue() {
         if (isEmpty()) throw new NoSuchElementException("Queue underflow");
-        Item item = first.item;
-        first = first.next;
+        Item item = q[first];
+        q[first] = null;              // to avoid loitering
+        first = (first + 1) & mask;
         N--;
-        if (isEmpty()) last = null;   // to avoid loitering
         return item;
     }
 
+    /**
+     * Removes all items from this queue, keeping the backing array for reuse.
+     */
+    public void clear() {
+        for (int i = 0; i < N; i++)
+            q[(first + i) & mask] = null;   // to avoid loitering
+        first = 0;
+        N = 0;
+    }
+
+    // move the items to a new array of the given power-of-two capacity
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        Item[] temp = (Item[]) new Object[capacity];
+        for (int i = 0; i < N; i++)
+            temp[i] = q[(first + i) & mask];
+        q = temp;
+        mask = capacity - 1;
+        first = 0;
+    }
+
+    // smallest power of two that is >= n (and at least 1)
+    static int powerOfTwo(int n) {
+        int cap = 1;
+        while (cap < n) {
+            cap <<= 1;
+            if (cap <= 0) throw new IllegalArgumentException("Capacity too large");
+        }
+        return cap;
+    }
+
     /**
      * Returns a string representation of this queue.
      * @return the sequence of items in FIFO order, separated by spaces
@@ -117,31 +157,27 @@ public class Queue<Item> implements Iterable<Item> {
         for (Item item : this)
             s.append(item + " ");
         return s.toString();
-    } 
+    }
 
     /**
      * Returns an iterator that iterates over the items in this queue in FIFO order.
      * @return an iterator that iterates over the items in this queue in FIFO order
      */
     public Iterator<Item> iterator()  {
-        return new ListIterator<Item>(first);  
+        return new ArrayIterator();
     }
 
     // an iterator, doesn't implement remove() since it's optional
-    private class ListIterator<Item> implements Iterator<Item> {
-        private Node<Item> current;
-
-        public ListIterator(Node<Item> first) {
-            current = first;
-        }
+    private class ArrayIterator implements Iterator<Item> {
+        private int i = 0;
 
-        public boolean hasNext()  { return current != null;                     }
+        public boolean hasNext()  { return i < N;                               }
         public void remove()      { throw new UnsupportedOperationException();  }
 
         public Item next() {
             if (!hasNext()) throw new NoSuchElementException();
-            Item item = current.item;
-            current = current.next; 
+            Item item = q[(first + i) & mask];
+            i++;
             return item;
         }
     }
@@ -0,0 +1,159 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: VectorKernel.java (optional, loaded reflectively)
+ *
+ * DESCRIPTION: The inner loop of classification: a sparse matrix-vector product of a
+ * document's (row, weight) pairs against a row-major weight table w[row*numCats + c],
+ * accumulated into one score per category. The document's rows are first grouped (sorted,
+ * repeats turned into counts), so each row of the table is read once and in increasing
+ * address order. Rows are then processed four at a time: every category's score is loaded
+ * and stored once per four rows instead of once per row, and the loop over categories is a
+ * plain unit-stride loop over contiguous doubles, which the JIT compiles to SIMD instructions.
+ * HEAP is the kernel heap tables score with: VectorKernel, which spells the same loop out with
+ * the Vector API, when the JVM runs with --add-modules jdk.incubator.vector, and the scalar
+ * accumulate below otherwise.
+ **********************************************************************************************/
+
+import java.util.Arrays;
+import java.util.Random;
+
+final class ScoringKernel {
+	private ScoringKernel() { }
+	
+	//an implementation of accumulate over a heap table
+	interface Accumulator {
+		void accumulate(double[] w, int numCats, int[] rows, double[] x, int n, double[] score);
+	}
+	
+	static final Accumulator SCALAR = new Accumulator() {
+		public void accumulate(double[] w, int numCats, int[] rows, double[] x, int n, double[] score) {
+			ScoringKernel.accumulate(w, numCats, rows, x, n, score);
+		}
+	};
+	
+	static final Accumulator HEAP = load();
+	
+	//VectorKernel if its incubator module is present; the class refers to the module, so it is
+	//only named here as a string and fails to link (LinkageError) when the module is missing
+	private static Accumulator load()
+	{
+		try
+		{
+			return (Accumulator) Class.forName("classifier.VectorKernel").getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return SCALAR;
+		}
+		catch (LinkageError e)
+		{
+			return SCALAR;
+		}
+	}
+
+	//sorts rows[0..n) and collapses repeats: afterwards rows[0..k) are the distinct rows in
+	//increasing order and counts[i] is the # of times rows[i] occurred. Returns k.
+	static int group(int[] rows, int n, double[] counts)
+	{
+		Arrays.sort(rows, 0, n);
+		int k = 0;
+		for (int i = 0; i < n; )
+		{
+			int j = i + 1;
+			while (j < n && rows[j] == rows[i])
+				j++;
+			rows[k] = rows[i];
+			counts[k++] = j - i;
+			i = j;
+		}
+		return k;
+	}
+
+	//score[c] += sum over i < n of x[i] * w[rows[i]*numCats + c], for every category c
+	static void accumulate(double[] w, int numCats, int[] rows, double[] x, int n, double[] score)
+	{
+		int i = 0;
+		for (; i + 3 < n; i += 4)
+		{
+			int b0 = rows[i]*numCats, b1 = rows[i + 1]*numCats, b2 = rows[i + 2]*numCats, b3 = rows[i + 3]*numCats;
+			double x0 = x[i], x1 = x[i + 1], x2 = x[i + 2], x3 = x[i + 3];
+			for (int c = 0; c < numCats; c++)
+				score[c] += x0*w[b0 + c] + x1*w[b1 + c] + x2*w[b2 + c] + x3*w[b3 + c];
+		}
+		for (; i < n; i++)
+		{
+			int b = rows[i]*numCats;
+			double xi = x[i];
+			for (int c = 0; c < numCats; c++)
+				score[c] += xi*w[b + c];
+		}
+	}
+
+	//usage: java [--add-modules jdk.incubator.vector] ScoringKernel [numCats] [rows] [tokensPerDoc]
+	//compares the scalar kernel and HEAP with a row-at-a-time loop over the same random table 
+	//and documents
+	public static void main(String[] args)
+	{
+		int numCats = (args.length > 0) ? Integer.parseInt(args[0]) : 256;
+		int numRows = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+		int tokens = (args.length > 2) ? Integer.parseInt(args[2]) : 200;
+		Random rnd = new Random(42);
+		double[] w = new double[numRows*numCats];
+		for (int i = 0; i < w.length; i++)
+			w[i] = -10*rnd.nextDouble();
+		int[][] docs = new int[1000][tokens];
+		for (int[] d: docs)
+			for (int i = 0; i < tokens; i++)
+				d[i] = (int) Math.min(numRows - 1, Math.abs(rnd.nextGaussian())*numRows/4);
+
+		int[] rows = new int[tokens];
+		double[] x = new double[tokens];
+		double[] a = new double[numCats];
+		double[] b = new double[numCats];
+		double[] v = new double[numCats];
+		double maxDiff = 0, vectorDiff = 0;
+		System.out.println("HEAP kernel: " + ((HEAP == SCALAR) ? "scalar" : HEAP.getClass().getSimpleName()));
+		for (int round = 0; round < 5; round++)
+		{
+			long t0 = System.nanoTime();
+			for (int[] d: docs)
+			{
+				Arrays.fill(a, 0);
+				for (int i = 0; i < tokens; i++)
+				{
+					int base = d[i]*numCats;
+					for (int c = 0; c < numCats; c++)
+						a[c] += w[base + c];
+				}
+			}
+			long t1 = System.nanoTime();
+			for (int[] d: docs)
+			{
+				Arrays.fill(b, 0);
+				System.arraycopy(d, 0, rows, 0, tokens);
+				int k = group(rows, tokens, x);
+				accumulate(w, numCats, rows, x, k, b);
+			}
+			long t2 = System.nanoTime();
+			for (int[] d: docs)
+			{
+				Arrays.fill(v, 0);
+				System.arraycopy(d, 0, rows, 0, tokens);
+				int k = group(rows, tokens, x);
+				HEAP.accumulate(w, numCats, rows, x, k, v);
+			}
+			long t3 = System.nanoTime();
+			for (int c = 0; c < numCats; c++)
+			{
+				maxDiff = Math.max(maxDiff, Math.abs(a[c] - b[c]));
+				vectorDiff = Math.max(vectorDiff, Math.abs(b[c] - v[c]));
+			}
+			System.out.printf("row-at-a-time %.1fus/doc   kernel %.1fus/doc   HEAP %.1fus/doc%n", 
+					(t1 - t0)/1e3/docs.length, (t2 - t1)/1e3/docs.length, (t3 - t2)/1e3/docs.length);
+		}
+		System.out.println("max score difference: " + maxDiff);
+		System.out.println("max difference between the kernel and HEAP: " + vectorDiff);
+	}
+}
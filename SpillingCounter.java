@@ -0,0 +1,421 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES:
+ * CorpusStatistics.java, Document.java, DocumentBuilder.java, CorpusReader.java,
+ * DocumentHandler.java, LearnerOptions.java, Metrics.java, CorpusCache.java, DocumentSink.java
+ *
+ * DESCRIPTION: Counts the statistics of a training corpus within a memory budget. Documents are
+ * counted one at a time into an in-memory table of term -> (total count, and # of documents and
+ * occurrences per category) and are not kept. When the table's estimated size exceeds the
+ * budget it is sorted by term and written to a temporary run file, and counting starts over
+ * with an empty table. At the end all runs are merged with a k-way merge (a priority queue of
+ * run readers ordered by their current term; at most MAX_FAN_IN runs at a time, merging groups
+ * of runs into longer runs first if there are more) into the final CorpusStatistics, which equal
+ * those counted in memory from the same documents. Only the final tables must fit in memory.
+ **********************************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public class SpillingCounter {
+	//rough heap cost of a table entry beyond its characters and counts (map node, String, arrays)
+	private static final int ENTRY_OVERHEAD = 112;
+	//most run files read at once by one merge
+	private static final int MAX_FAN_IN = 64;
+
+	private final long memoryBudget;   //bytes of table kept in memory before a spill
+	private final File spillDir;       //where run files are written
+
+	private int numDocs;
+	private final HashMap<String, Integer> catIds;   //category -> id, in order of first appearance
+	private final List<String> catNames;
+	private int[] catCount;                          //# of documents per category id
+
+	//term -> [total, docs of cat 0, occurrences in cat 0, docs of cat 1, ...] (by category id)
+	private HashMap<String, int[]> table;
+	private long tableBytes;                         //estimated heap used by table
+	private final List<File> runs;
+
+	public SpillingCounter(long memoryBudget, File spillDir)
+	{
+		if (memoryBudget <= 0)
+			throw new IllegalArgumentException("Memory budget must be positive");
+		this.memoryBudget = memoryBudget;
+		this.spillDir = spillDir;
+		catIds = new HashMap<String, Integer>();
+		catNames = new ArrayList<String>();
+		catCount = new int[8];
+		table = new HashMap<String, int[]>();
+		runs = new ArrayList<File>();
+	}
+
+	//reads, tokenizes and counts a whole corpus within the options' memory budget, spilling to the
+	//default temporary directory ('R' for reuters data, 'T' for excel ticket data)
+	public static CorpusStatistics count(String fileName, char dataType, LearnerOptions options) throws IOException
+	{
+		final DocumentBuilder builder = new DocumentBuilder(options);
+		final SpillingCounter counter = new SpillingCounter(options.getMemoryBudget(), null);
+		try
+		{
+			long t0 = Metrics.start();
+			if (options.getCacheDirectory() != null)
+			{
+				new CorpusCache(new File(options.getCacheDirectory())).stream(fileName, dataType, options, new DocumentSink() {
+					public void document(Document d) throws IOException {
+						counter.add(d);
+					}
+				});
+			}
+			else
+			{
+				CorpusReader.read(fileName, dataType, new DocumentHandler() {
+					public void document(String[] cats, String text) throws IOException {
+						counter.add(builder.build(cats, text));
+					}
+				});
+			}
+			Metrics.PARSE.recordSince(t0);
+			return counter.finish();
+		}
+		finally
+		{
+			counter.deleteRuns();
+		}
+	}
+
+	//counts one document under each of its (distinct) labels
+	public void add(Document d) throws IOException
+	{
+		int[] cats = new int[d.labels().length];
+		int n = 0;
+		for (String l: d.labels())
+		{
+			int c = categoryId(l);
+			boolean dup = false;
+			for (int i = 0; i < n; i++)
+				dup |= (cats[i] == c);
+			if (!dup)
+			{
+				cats[n++] = c;
+				catCount[c]++;
+			}
+		}
+		numDocs++;
+
+		for (Map.Entry<String, Integer> e: d.termCounts().entrySet())
+		{
+			int count = e.getValue();
+			int[] rec = table.get(e.getKey());
+			if (rec == null)
+			{
+				rec = new int[1 + 2*catNames.size()];
+				table.put(e.getKey(), rec);
+				tableBytes += ENTRY_OVERHEAD + 2L*e.getKey().length() + 4L*rec.length;
+			}
+			else if (rec.length < 1 + 2*catNames.size())
+			{
+				//a category was added after this term was first seen
+				tableBytes += 4L*(1 + 2*catNames.size() - rec.length);
+				rec = Arrays.copyOf(rec, 1 + 2*catNames.size());
+				table.put(e.getKey(), rec);
+			}
+			rec[0] += count;
+			for (int i = 0; i < n; i++)
+			{
+				rec[1 + 2*cats[i]]++;
+				rec[2 + 2*cats[i]] += count;
+			}
+		}
+
+		if (tableBytes > memoryBudget)
+			spill();
+	}
+
+	//# of run files written so far
+	public int numRuns()
+	{
+		return runs.size();
+	}
+
+	//merges the spilled runs and the in-memory table into the final statistics
+	public CorpusStatistics finish() throws IOException
+	{
+		//categories in sorted order, and the new index of each category id
+		String[] categories = catNames.toArray(new String[catNames.size()]);
+		Arrays.sort(categories);
+		int numCats = categories.length;
+		int[] sortedIndex = new int[numCats];
+		int[] counts = new int[numCats];
+		for (int id = 0; id < numCats; id++)
+		{
+			sortedIndex[id] = Arrays.binarySearch(categories, catNames.get(id));
+			counts[sortedIndex[id]] = catCount[id];
+		}
+
+		List<String> terms = new ArrayList<String>();
+		List<int[]> recs = new ArrayList<int[]>();
+		if (runs.isEmpty())
+		{
+			String[] keys = table.keySet().toArray(new String[table.size()]);
+			Arrays.sort(keys);
+			for (String k: keys)
+			{
+				terms.add(k);
+				recs.add(table.get(k));
+			}
+		}
+		else
+		{
+			if (!table.isEmpty())
+				spill();
+			while (runs.size() > MAX_FAN_IN)
+				mergeGroups();
+			merge(runs, null, terms, recs);
+		}
+		table = new HashMap<String, int[]>();
+		tableBytes = 0;
+
+		int numTerms = terms.size();
+		int[] termTotals = new int[numTerms];
+		int[][] docFreq = new int[numTerms][numCats];
+		int[][] termFreq = new int[numTerms][numCats];
+		for (int t = 0; t < numTerms; t++)
+		{
+			int[] rec = recs.get(t);
+			recs.set(t, null);
+			termTotals[t] = rec[0];
+			for (int id = 0; 2 + 2*id < rec.length; id++)
+			{
+				docFreq[t][sortedIndex[id]] = rec[1 + 2*id];
+				termFreq[t][sortedIndex[id]] = rec[2 + 2*id];
+			}
+		}
+		return new CorpusStatistics(numDocs, categories, counts, terms.toArray(new String[numTerms]),
+				termTotals, docFreq, termFreq);
+	}
+
+	//removes the run files (they are also removed on exit)
+	public void deleteRuns()
+	{
+		for (File f: runs)
+			f.delete();
+		runs.clear();
+	}
+
+	private int categoryId(String cat)
+	{
+		Integer id = catIds.get(cat);
+		if (id == null)
+		{
+			id = catNames.size();
+			catIds.put(cat, id);
+			catNames.add(cat);
+			if (id == catCount.length)
+				catCount = Arrays.copyOf(catCount, 2*id);
+		}
+		return id;
+	}
+
+/*******************************************************************************************
+ * Run files: a sequence of entries in increasing term order, each
+ *     true, term (UTF), total, # of categories k, then k times (category id, docs, occurrences)
+ * followed by false.
+ * ******************************************************************************************/
+	//writes the table sorted by term to a new run file and empties it
+	private void spill() throws IOException
+	{
+		File f = newRun();
+		String[] keys = table.keySet().toArray(new String[table.size()]);
+		Arrays.sort(keys);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+		try
+		{
+			for (String k: keys)
+				writeEntry(out, k, table.get(k));
+			out.writeBoolean(false);
+		}
+		finally
+		{
+			out.close();
+		}
+		table = new HashMap<String, int[]>();
+		tableBytes = 0;
+	}
+	
+	private File newRun() throws IOException
+	{
+		File f = File.createTempFile("counts", ".run", spillDir);
+		f.deleteOnExit();
+		runs.add(f);
+		return f;
+	}
+	
+	private static void writeEntry(DataOutputStream out, String term, int[] rec) throws IOException
+	{
+		out.writeBoolean(true);
+		out.writeUTF(term);
+		out.writeInt(rec[0]);
+		int nz = 0;
+		for (int i = 1; i < rec.length; i += 2)
+			nz += (rec[i] != 0) ? 1 : 0;
+		out.writeInt(nz);
+		for (int i = 1; i < rec.length; i += 2)
+		{
+			if (rec[i] != 0)
+			{
+				out.writeInt((i - 1)/2);
+				out.writeInt(rec[i]);
+				out.writeInt(rec[i + 1]);
+			}
+		}
+	}
+	
+	//merges the runs in groups of MAX_FAN_IN into (fewer, longer) new runs
+	private void mergeGroups() throws IOException
+	{
+		List<File> old = new ArrayList<File>(runs);
+		runs.clear();
+		for (int i = 0; i < old.size(); i += MAX_FAN_IN)
+		{
+			List<File> group = old.subList(i, Math.min(i + MAX_FAN_IN, old.size()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newRun()), 1 << 16));
+			try
+			{
+				merge(group, out, null, null);
+				out.writeBoolean(false);
+			}
+			finally
+			{
+				out.close();
+			}
+			for (File f: group)
+				f.delete();
+		}
+	}
+
+	//k-way merge of the given runs: repeatedly takes the smallest current term, sums its counts 
+	//over every run positioned at it, and advances those runs. The merged entries are written to
+	//out if it is not null, and otherwise collected in terms and recs.
+	private void merge(List<File> inputs, DataOutputStream out, List<String> terms, List<int[]> recs) throws IOException
+	{
+		int width = 1 + 2*catNames.size();
+		PriorityQueue<RunReader> heap = new PriorityQueue<RunReader>(inputs.size());
+		List<RunReader> readers = new ArrayList<RunReader>();
+		try
+		{
+			for (File f: inputs)
+			{
+				RunReader r = new RunReader(f);
+				readers.add(r);
+				if (r.next())
+					heap.add(r);
+			}
+			while (!heap.isEmpty())
+			{
+				String term = heap.peek().term;
+				int[] rec = new int[width];
+				while (!heap.isEmpty() && heap.peek().term.equals(term))
+				{
+					RunReader r = heap.poll();
+					r.addTo(rec);
+					if (r.next())
+						heap.add(r);
+				}
+				if (out != null)
+					writeEntry(out, term, rec);
+				else
+				{
+					terms.add(term);
+					recs.add(rec);
+				}
+			}
+		}
+		finally
+		{
+			for (RunReader r: readers)
+				r.close();
+		}
+	}
+
+	//reads a run file one entry at a time
+	private static final class RunReader implements Comparable<RunReader> {
+		private final DataInputStream in;
+		String term;           //term of the current entry
+		private int total;
+		private int[] cats = new int[8];
+		private int[] docs = new int[8];
+		private int[] occurrences = new int[8];
+		private int k;         //# of categories of the current entry
+
+		RunReader(File f) throws IOException
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+		}
+
+		//advances to the next entry; false at the end of the run
+		boolean next() throws IOException
+		{
+			try
+			{
+				if (!in.readBoolean())
+					return false;
+			}
+			catch (EOFException e)
+			{
+				throw new IOException("Truncated run file", e);
+			}
+			term = in.readUTF();
+			total = in.readInt();
+			k = in.readInt();
+			if (k > cats.length)
+			{
+				cats = new int[k];
+				docs = new int[k];
+				occurrences = new int[k];
+			}
+			for (int i = 0; i < k; i++)
+			{
+				cats[i] = in.readInt();
+				docs[i] = in.readInt();
+				occurrences[i] = in.readInt();
+			}
+			return true;
+		}
+
+		//adds the current entry's counts to a record laid out like the in-memory table's
+		void addTo(int[] rec)
+		{
+			rec[0] += total;
+			for (int i = 0; i < k; i++)
+			{
+				rec[1 + 2*cats[i]] += docs[i];
+				rec[2 + 2*cats[i]] += occurrences[i];
+			}
+		}
+
+		public int compareTo(RunReader that)
+		{
+			return term.compareTo(that.term);
+		}
+
+		void close() throws IOException
+		{
+			in.close();
+		}
+	}
+}
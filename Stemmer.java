@@ -43,7 +43,7 @@ import java.io.*;
   * by calling one of the various stem(something) methods.
   */
 
-class Stemmer
+class Stemmer implements TokenStemmer
 {  private char[] b;
    private int i,     /* offset into b */
                i_end, /* offset to end of stemmed word */
@@ -85,6 +85,20 @@ class Stemmer
       for (int c = 0; c < wLen; c++) b[i++] = w[c];
    }
 
+   /** Adds the len characters of w starting at off to the word being stemmed,
+    * so a token span over a shared buffer can be stemmed without first
+    * copying it into its own array or String.
+    */
+
+   public void add(char[] w, int off, int len)
+   {  if (i+len >= b.length)
+      {  char[] new_b = new char[i+len+INC];
+         for (int c = 0; c < i; c++) new_b[c] = b[c];
+         b = new_b;
+      }
+      for (int c = 0; c < len; c++) b[i++] = w[off+c];
+   }
+
    /**
     * After a word has been stemmed, it can be retrieved by toString(),
     * or a reference to the internal buffer can be retrieved by getResultBuffer
@@ -0,0 +1,211 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: TermLookup.java
+ * 
+ * DESCRIPTION: Open-addressing hash table which assigns dense integer ids (0, 1, 2, ...) to 
+ * terms in insertion order. Terms can be added and looked up directly from a char span, so 
+ * tokens coming out of the Tokenizer and Stemmer buffers never need to become Strings. 
+ * All term characters live in one shared char pool; the String form of a term is only
+ * created (and then cached) when term(id) is called.
+ * Lookups are safe from several threads once the dictionary is no longer being added to.
+ **********************************************************************************************/
+
+public class TermDictionary implements TermLookup {
+	private int[] table;      //slot -> id+1 (0 marks an empty slot)
+	private int mask;         //table.length - 1, table.length is a power of two
+	
+	private char[] pool;      //characters of all terms, back to back
+	private int poolSize;
+	private int[] start;      //id -> offset of the term in the pool
+	private int[] length;     //id -> length of the term
+	private int[] hash;       //id -> cached hash of the term
+	private String[] strings; //id -> String form of the term, created on demand
+	private int size;         //number of terms
+	
+	public TermDictionary()
+	{
+		this(16);
+	}
+	
+	public TermDictionary(int expectedTerms)
+	{
+		int cap = Queue.powerOfTwo(Math.max(4, expectedTerms*2));
+		table = new int[cap];
+		mask = cap - 1;
+		int n = Math.max(4, expectedTerms);
+		pool = new char[n*8];
+		start = new int[n];
+		length = new int[n];
+		hash = new int[n];
+		strings = new String[n];
+	}
+	
+/********************************************************************************************
+ * Lookup
+ * ******************************************************************************************/
+	//number of distinct terms
+	public int size()
+	{
+		return size;
+	}
+	
+	//returns the id of the term in buf[off, off+len), or -1 if it is not in the dictionary
+	public int get(char[] buf, int off, int len)
+	{
+		int h = hash(buf, off, len);
+		for (int s = h & mask; ; s = (s + 1) & mask)
+		{
+			int id = table[s] - 1;
+			if (id < 0)
+				return -1;
+			if (hash[id] == h && equals(id, buf, off, len))
+				return id;
+		}
+	}
+	
+	//returns the id of the given term, or -1 if it is not in the dictionary
+	public int get(String term)
+	{
+		char[] c = term.toCharArray();
+		return get(c, 0, c.length);
+	}
+	
+	public boolean contains(char[] buf, int off, int len)
+	{
+		return get(buf, off, len) >= 0;
+	}
+	
+	//returns the term with the given id, creating its String form the first time
+	public String term(int id)
+	{
+		if (id < 0 || id >= size)
+			throw new IndexOutOfBoundsException("No term with id " + id);
+		String s = strings[id];
+		if (s == null)
+		{
+			s = new String(pool, start[id], length[id]);
+			strings[id] = s;
+		}
+		return s;
+	}
+	
+	//copies the characters of the term with the given id into dst at dstOff, returns its length
+	public int copyTerm(int id, char[] dst, int dstOff)
+	{
+		if (id < 0 || id >= size)
+			throw new IndexOutOfBoundsException("No term with id " + id);
+		System.arraycopy(pool, start[id], dst, dstOff, length[id]);
+		return length[id];
+	}
+	
+	public int termLength(int id)
+	{
+		return length[id];
+	}
+	
+/********************************************************************************************
+ * Insertion
+ * ******************************************************************************************/
+	//returns the id of the term in buf[off, off+len), adding it first if it is new
+	public int add(char[] buf, int off, int len)
+	{
+		int h = hash(buf, off, len);
+		int s = h & mask;
+		for (; ; s = (s + 1) & mask)
+		{
+			int id = table[s] - 1;
+			if (id < 0)
+				break;
+			if (hash[id] == h && equals(id, buf, off, len))
+				return id;
+		}
+		
+		//new term: copy its characters into the pool
+		if (size == start.length)
+			growIds();
+		if (poolSize + len > pool.length)
+		{
+			char[] p = new char[Math.max(poolSize + len, 2*pool.length)];
+			System.arraycopy(pool, 0, p, 0, poolSize);
+			pool = p;
+		}
+		System.arraycopy(buf, off, pool, poolSize, len);
+		int id = size++;
+		start[id] = poolSize;
+		length[id] = len;
+		hash[id] = h;
+		poolSize += len;
+		table[s] = id + 1;
+		
+		//keep the load factor at or below 1/2
+		if (2*size > table.length)
+			rehash(2*table.length);
+		return id;
+	}
+	
+	public int add(String term)
+	{
+		char[] c = term.toCharArray();
+		int id = add(c, 0, c.length);
+		if (strings[id] == null)
+			strings[id] = term;
+		return id;
+	}
+	
+/********************************************************************************************
+ * Private helpers
+ * ******************************************************************************************/
+	//same polynomial as String.hashCode, with its bits spread for the power-of-two table
+	static int hash(char[] buf, int off, int len)
+	{
+		int h = 0;
+		for (int i = off; i < off + len; i++)
+			h = 31*h + buf[i];
+		return h ^ (h >>> 16);
+	}
+	
+	private boolean equals(int id, char[] buf, int off, int len)
+	{
+		if (length[id] != len)
+			return false;
+		int p = start[id];
+		for (int i = 0; i < len; i++)
+		{
+			if (pool[p + i] != buf[off + i])
+				return false;
+		}
+		return true;
+	}
+	
+	private void growIds()
+	{
+		int n = 2*start.length;
+		int[] s = new int[n];
+		int[] l = new int[n];
+		int[] h = new int[n];
+		String[] str = new String[n];
+		System.arraycopy(start, 0, s, 0, size);
+		System.arraycopy(length, 0, l, 0, size);
+		System.arraycopy(hash, 0, h, 0, size);
+		System.arraycopy(strings, 0, str, 0, size);
+		start = s;
+		length = l;
+		hash = h;
+		strings = str;
+	}
+	
+	private void rehash(int capacity)
+	{
+		table = new int[capacity];
+		mask = capacity - 1;
+		for (int id = 0; id < size; id++)
+		{
+			int s = hash[id] & mask;
+			while (table[s] != 0)
+				s = (s + 1) & mask;
+			table[s] = id + 1;
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: none
+ * 
+ * DESCRIPTION: Read-only map from terms to dense integer ids (0 .. size()-1), looked up 
+ * directly from a char span so tokens never need to become Strings. Implemented by the 
+ * growable TermDictionary and by the frozen MinimalPerfectHash.
+ **********************************************************************************************/
+
+public interface TermLookup {
+	//number of terms
+	int size();
+	
+	//id of the term in buf[off, off+len), or -1 if it is not one of the terms
+	int get(char[] buf, int off, int len);
+	
+	//id of the given term, or -1 if it is not one of the terms
+	int get(String term);
+}
@@ -0,0 +1,830 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: TermDictionary.java, StopWords.java, TokenStemmer.java, Stemmer.java, Porter2Stemmer.java,
+ * Tokenizer.java, TokenHandler.java, HtmlEntities.java, StringStemmer.java, NaiveBayesLearner.java,
+ * CorpusReader.java, DocumentHandler.java
+ *
+ * DESCRIPTION: Configurable cleaning of raw text into the tokens (or stems) that are counted
+ * and classified. A pipeline is put together with a Builder out of these stages, always
+ * applied in this order:
+ *   - entity decoding: character references (&eacute; &#233; &amp; ...) become their chars
+ *   - Unicode normalization: non-ASCII text is put in NFKC form (compatibility chars such as
+ *                   full-width letters, ligatures and no-break spaces become the plain ones)
+ *   - accent stripping: diacritics are removed from letters, and ß, æ, ø, ł ... are spelled out
+ *   - lowercase:    every char is case-folded (locale-independent, so "I" is "i" in any locale)
+ *   - stopwords and domain words: every word (maximal run of letters, digits and '_') in one
+ *                   of the lists is deleted with the whitespace after it
+ *   - noise tokens: in each whitespace-separated token with a digit, '_' or '@' between its
+ *                   first and last word boundary, everything between those boundaries is deleted
+ *   - entities:     "&lt;" and numeric entities such as "&#39;" are deleted
+ *   - punctuation:  the punctuation chars are deleted, and separator chars split the token
+ *   - stemming:     each piece left is reduced to its stem, by the Porter stemmer (Stemmer) or
+ *                   by Porter2, the Snowball English stemmer (Porter2Stemmer)
+ * The word lists are compiled once into a dictionary and the char classes into tables, so a
+ * built pipeline is immutable and can be shared by any number of threads. tokenize cleans a
+ * text in one scan over its chars: words are looked up as they are read, and each token is
+ * finished (noise, entities, punctuation, stemming) as soon as the whitespace after it is
+ * reached, in a per-thread buffer that holds only that token. No regular expressions are used
+ * and no Strings are created. The first three stages rewrite the text before the scan, but only
+ * its non-ASCII runs go through java.text.Normalizer, and text which is pure ASCII (without '&'
+ * when decoding entities) is scanned as it is, so they cost English text one check per char.
+ * REUTERS gives the same tokens as StringStemmer.swRemove followed by the Tokenizer and the
+ * Stemmer (for ASCII text; non-ASCII text is case-folded char by char rather than lower-cased by
+ * the default locale). TICKETS is for international ticket text: it decodes entities and
+ * normalizes Unicode, drops Unicode quotes and dashes as well, and has no Reuters words.
+ **********************************************************************************************/
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class TextPipeline {
+	//the punctuation and separators of swRemove
+	private static final String PUNCTUATION = ".?!,()'\"/<>:|*{}[]~#";
+	private static final String SEPARATORS = "-&;";
+
+	//Reuters newswire: stopwords, the Reuters filler words and swRemove's punctuation (including
+	//its two Latin-1 chars), then Porter stems
+	public static final TextPipeline REUTERS = new Builder().lowercase(true).stopwords(StopWords.words())
+			.domainWords("reuter", "mln", "dlr", "dlrs").noiseTokens(true).entities(true)
+			.punctuation(PUNCTUATION + "\u00e2\u00ac").separators(SEPARATORS).stem(true).build();
+
+	//spreadsheet tickets, often not in English: decoded and normalized text, without the Reuters
+	//filler words, with Unicode quotes, guillemets and inverted marks as punctuation and dashes as separators
+	public static final TextPipeline TICKETS = new Builder().decodeEntities(true).normalizeUnicode(true)
+			.lowercase(true).stopwords(StopWords.words()).noiseTokens(true)
+			.punctuation(PUNCTUATION + "\u2018\u2019\u201a\u201c\u201d\u201e\u00ab\u00bb\u2039\u203a\u00bf\u00a1")
+			.separators(SEPARATORS + "\u2013\u2014").stem(true).build();
+
+	private static final int FORMAT_VERSION = 3;   //2: entity decoding, normalization and accent stripping; 3: stemmer choice
+
+	//the stemmer of the stemming stage
+	public enum Stemming {
+		NONE,      //tokens are not stemmed
+		PORTER,    //Porter's original algorithm (Stemmer)
+		PORTER2    //Porter2, the Snowball English stemmer, as in Lucene (Porter2Stemmer)
+	}
+
+	private final boolean decodeEntities;
+	private final boolean normalize;
+	private final boolean stripAccents;
+	private final boolean lowercase;
+	private final String[] stopwords;
+	private final String[] domainWords;
+	private final TermDictionary deleted;   //stopwords and domain words (null if there are none)
+	private final boolean noise;
+	private final boolean entities;
+	private final String punctuation;
+	private final String separators;
+	private final Stemming stemming;
+
+	//classes of the ASCII chars: for words and tokens, and for the punctuation stage
+	private final byte[] asciiClass = new byte[128];
+	private final byte[] asciiPunct = new byte[128];
+	private static final byte WORD = 1, SPACE = 2, PUNCT = 3, SEPARATOR = 4;
+
+	//per-thread token buffer and stemmers
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		protected Scratch initialValue() { return new Scratch(); }
+	};
+
+	private static final class Scratch {
+		char[] buf = new char[64];
+		final StringBuilder decoded = new StringBuilder();
+		final StringBuilder normalized = new StringBuilder();
+		final TokenStemmer[] stemmers = new TokenStemmer[Stemming.values().length];
+		boolean busy;   //a handler is tokenizing another text on this thread
+
+		TokenStemmer stemmer(Stemming kind)
+		{
+			TokenStemmer s = stemmers[kind.ordinal()];
+			if (s == null)
+				s = stemmers[kind.ordinal()] = newStemmer(kind);
+			return s;
+		}
+	}
+
+	private static TokenStemmer newStemmer(Stemming kind)
+	{
+		return (kind == Stemming.PORTER2) ? new Porter2Stemmer() : new Stemmer();
+	}
+
+	private TextPipeline(Builder b)
+	{
+		decodeEntities = b.decodeEntities;
+		normalize = b.normalize;
+		stripAccents = b.stripAccents;
+		lowercase = b.lowercase;
+		stopwords = b.stopwords.clone();
+		domainWords = b.domainWords.clone();
+		noise = b.noise;
+		entities = b.entities;
+		punctuation = b.punctuation;
+		separators = b.separators;
+		stemming = b.stemming;
+
+		if (stopwords.length + domainWords.length > 0)
+		{
+			deleted = new TermDictionary(stopwords.length + domainWords.length);
+			for (String w: stopwords)
+				deleted.add(w);
+			for (String w: domainWords)
+				deleted.add(w);
+		}
+		else
+			deleted = null;
+
+		for (char c = 0; c < 128; c++)
+		{
+			if (isWordChar(c))
+				asciiClass[c] = WORD;
+			else if (Tokenizer.isSpace(c))
+				asciiClass[c] = SPACE;
+			if (separators.indexOf(c) >= 0)
+				asciiPunct[c] = SEPARATOR;
+			else if (punctuation.indexOf(c) >= 0)
+				asciiPunct[c] = PUNCT;
+		}
+	}
+
+	//a builder starting from the stages of this pipeline, e.g. REUTERS.toBuilder().stem(false).build()
+	public Builder toBuilder()
+	{
+		Builder b = new Builder();
+		b.decodeEntities = decodeEntities;
+		b.normalize = normalize;
+		b.stripAccents = stripAccents;
+		b.lowercase = lowercase;
+		b.stopwords = stopwords.clone();
+		b.domainWords = domainWords.clone();
+		b.noise = noise;
+		b.entities = entities;
+		b.punctuation = punctuation;
+		b.separators = separators;
+		b.stemming = stemming;
+		return b;
+	}
+
+/********************************************************************************************
+ * Cleaning
+ * ******************************************************************************************/
+	//reports every cleaned token (its stem, if the pipeline stems) of the text in document order
+	public void tokenize(String text, TokenHandler handler)
+	{
+		Scratch s = SCRATCH.get();
+		if (s.busy)
+			s = new Scratch();
+		s.busy = true;
+		try
+		{
+			scan(prepare(text, s), s, handler);
+		}
+		finally
+		{
+			s.busy = false;
+		}
+	}
+
+	//a term as it is stored by a model trained with this pipeline: each of its whitespace-separated
+	//words stemmed (if the pipeline stems), joined by single spaces
+	public String stem(String term)
+	{
+		final StringBuilder sb = new StringBuilder();
+		final TokenStemmer stemmer = (stemming != Stemming.NONE) ? newStemmer(stemming) : null;
+		new Tokenizer().tokenize(term, new TokenHandler() {
+			public void token(char[] buf, int off, int len) {
+				if (sb.length() > 0)
+					sb.append(' ');
+				if (stemmer != null)
+				{
+					stemmer.add(buf, off, len);
+					stemmer.stem();
+					sb.append(stemmer.getResultBuffer(), 0, stemmer.getResultLength());
+				}
+				else
+					sb.append(buf, off, len);
+			}
+		});
+		return sb.toString();
+	}
+
+	//the text with entities decoded and its non-ASCII runs normalized, as the pipeline asks;
+	//pure ASCII text with nothing to decode is returned as it is
+	private CharSequence prepare(String text, Scratch s)
+	{
+		if (!decodeEntities && !normalize && !stripAccents)
+			return text;
+		int n = text.length();
+		int i = 0;
+		while (i < n && text.charAt(i) < 128 && !(decodeEntities && text.charAt(i) == '&'))
+			i++;
+		if (i == n)
+			return text;
+
+		CharSequence t = text;
+		if (decodeEntities)
+		{
+			s.decoded.setLength(0);
+			t = HtmlEntities.decode(text, s.decoded);
+		}
+		if (!normalize && !stripAccents)
+			return t;
+		n = t.length();
+		i = 0;
+		while (i < n && t.charAt(i) < 128)
+			i++;
+		if (i == n)
+			return t;
+		StringBuilder out = s.normalized;
+		out.setLength(0);
+		int copied = 0;
+		while (i < n)
+		{
+			if (t.charAt(i) < 128)
+			{
+				i++;
+				continue;
+			}
+			//a non-ASCII run, with the ASCII char before it, which a combining accent may belong to
+			int start = (i > copied) ? i - 1 : i;
+			int end = i;
+			while (end < n && t.charAt(end) >= 128)
+				end++;
+			out.append(t, copied, start);
+			appendNormalized(t.subSequence(start, end).toString(), out);
+			copied = i = end;
+		}
+		return out.append(t, copied, n);
+	}
+
+	//appends the normalized form of a run of text, without accents if they are stripped
+	private void appendNormalized(String run, StringBuilder out)
+	{
+		if (!stripAccents)
+		{
+			out.append(Normalizer.normalize(run, Normalizer.Form.NFKC));
+			return;
+		}
+		//decompose, drop the combining diacritical marks, then compose what is left (e.g. Hangul)
+		String d = Normalizer.normalize(run, normalize ? Normalizer.Form.NFKD : Normalizer.Form.NFD);
+		StringBuilder sb = new StringBuilder(d.length());
+		for (int i = 0; i < d.length(); i++)
+		{
+			char c = d.charAt(i);
+			if (c >= '\u0300' && c <= '\u036f')
+				continue;
+			String spelled = spelledOut(c);
+			if (spelled != null)
+				sb.append(spelled);
+			else
+				sb.append(c);
+		}
+		out.append(Normalizer.normalize(sb, Normalizer.Form.NFC));
+	}
+
+	//letters which have no decomposition into a base letter and an accent
+	private static String spelledOut(char c)
+	{
+		switch (c)
+		{
+			case '\u00df': return "ss";
+			case '\u00e6': return "ae";
+			case '\u00c6': return "AE";
+			case '\u0153': return "oe";
+			case '\u0152': return "OE";
+			case '\u00f8': return "o";
+			case '\u00d8': return "O";
+			case '\u0142': return "l";
+			case '\u0141': return "L";
+			case '\u0111': case '\u00f0': return "d";
+			case '\u0110': case '\u00d0': return "D";
+			case '\u00fe': return "th";
+			case '\u00de': return "TH";
+			default: return null;
+		}
+	}
+
+	//lower-cases and copies the text into the token buffer one token at a time, deleting listed
+	//words with the whitespace after them, and finishes each token at the whitespace after it
+	private void scan(CharSequence text, Scratch s, TokenHandler handler)
+	{
+		char[] buf = s.buf;
+		int n = text.length();
+		int w = 0;   //length of the token so far
+		for (int r = 0; r < n; )
+		{
+			char c = fold(text.charAt(r));
+			if (isSpace(c))
+			{
+				if (w > 0)
+					finishToken(s, w, handler);
+				w = 0;
+				r++;
+				continue;
+			}
+			if (deleted == null || !isWord(c))
+			{
+				if (w == buf.length)
+					buf = grow(s);
+				buf[w++] = c;
+				r++;
+				continue;
+			}
+
+			//a whole word, then deleted if it is listed
+			int start = w;
+			while (r < n && isWord(c = fold(text.charAt(r))))
+			{
+				if (w == buf.length)
+					buf = grow(s);
+				buf[w++] = c;
+				r++;
+			}
+			if (deleted.contains(buf, start, w - start))
+			{
+				w = start;
+				while (r < n && isSpace(text.charAt(r)))
+					r++;
+			}
+		}
+		if (w > 0)
+			finishToken(s, w, handler);
+	}
+
+	//cleans the token s.buf[0, e) in place and reports the pieces left of it
+	private void finishToken(Scratch s, int e, TokenHandler handler)
+	{
+		char[] buf = s.buf;
+		if (noise)
+			e = removeNoise(buf, e);
+		if (entities)
+			e = removeEntities(buf, e);
+
+		//punctuation is dropped; separators end a piece
+		int w = 0;
+		int piece = 0;
+		for (int r = 0; r < e; r++)
+		{
+			char c = buf[r];
+			byte k = punctClass(c);
+			if (k == SEPARATOR)
+			{
+				if (w > piece)
+					emit(s, piece, w - piece, handler);
+				piece = w;
+			}
+			else if (k != PUNCT)
+				buf[w++] = c;
+		}
+		if (w > piece)
+			emit(s, piece, w - piece, handler);
+	}
+
+	private void emit(Scratch s, int off, int len, TokenHandler handler)
+	{
+		if (stemming == Stemming.NONE)
+		{
+			handler.token(s.buf, off, len);
+			return;
+		}
+		TokenStemmer stemmer = s.stemmer(stemming);
+		stemmer.add(s.buf, off, len);
+		stemmer.stem();
+		handler.token(stemmer.getResultBuffer(), 0, stemmer.getResultLength());
+	}
+
+	//noise tokens: if a digit, '_' or '@' lies before the last word boundary of buf[0, e) and
+	//after its first one, everything from the first to the last boundary is deleted; returns the new length
+	private int removeNoise(char[] buf, int e)
+	{
+		int first = -1, last = -1;
+		for (int i = 0; i <= e; i++)
+		{
+			boolean left = (i > 0) && isWord(buf[i - 1]);
+			boolean right = (i < e) && isWord(buf[i]);
+			if (left != right)
+			{
+				if (first < 0)
+					first = i;
+				last = i;
+			}
+		}
+		int special = -1;
+		for (int i = 0; i < last; i++)
+		{
+			char c = buf[i];
+			if ((c >= '0' && c <= '9') || c == '_' || c == '@')
+				special = i;
+		}
+		if (special < 0 || first > special)
+			return e;
+		System.arraycopy(buf, last, buf, first, e - last);
+		return e - (last - first);
+	}
+
+	//deletes "&lt;" and "&#<digits>;", matched in buf[0, e) as it is before any of them are deleted
+	private static int removeEntities(char[] buf, int e)
+	{
+		int w = 0;
+		for (int r = 0; r < e; )
+		{
+			if (buf[r] == '&' && r + 3 < e)
+			{
+				if (buf[r + 1] == 'l' && buf[r + 2] == 't' && buf[r + 3] == ';')
+				{
+					r += 4;
+					continue;
+				}
+				if (buf[r + 1] == '#')
+				{
+					int d = r + 2;
+					while (d < e && buf[d] >= '0' && buf[d] <= '9')
+						d++;
+					if (d > r + 2 && d < e && buf[d] == ';')
+					{
+						r = d + 1;
+						continue;
+					}
+				}
+			}
+			buf[w++] = buf[r++];
+		}
+		return w;
+	}
+
+	private char fold(char c)
+	{
+		if (!lowercase)
+			return c;
+		if (c < 128)
+			return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+		//simple case folding: upper then lower case maps e.g. final sigma, long s and dotless i too
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private boolean isWord(char c)
+	{
+		return (c < 128) ? asciiClass[c] == WORD : isWordChar(c);
+	}
+
+	private boolean isSpace(char c)
+	{
+		return c < 128 && asciiClass[c] == SPACE;
+	}
+
+	private byte punctClass(char c)
+	{
+		if (c < 128)
+			return asciiPunct[c];
+		if (separators.indexOf(c) >= 0)
+			return SEPARATOR;
+		return (punctuation.indexOf(c) >= 0) ? PUNCT : 0;
+	}
+
+	//a char of a regex word (\w, with \b's Unicode letters and digits)
+	private static boolean isWordChar(char c)
+	{
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+	private static char[] grow(Scratch s)
+	{
+		s.buf = Arrays.copyOf(s.buf, 2*s.buf.length);
+		return s.buf;
+	}
+
+/********************************************************************************************
+ * File format: version, stage flags, stopwords, domain words, punctuation, separators
+ * ******************************************************************************************/
+	public void writeTo(DataOutputStream out) throws IOException
+	{
+		out.writeInt(FORMAT_VERSION);
+		out.writeBoolean(decodeEntities);
+		out.writeBoolean(normalize);
+		out.writeBoolean(stripAccents);
+		out.writeBoolean(lowercase);
+		out.writeBoolean(noise);
+		out.writeBoolean(entities);
+		out.writeInt(stemming.ordinal());
+		writeWords(out, stopwords);
+		writeWords(out, domainWords);
+		out.writeUTF(punctuation);
+		out.writeUTF(separators);
+	}
+
+	public static TextPipeline readFrom(DataInputStream in) throws IOException
+	{
+		int version = in.readInt();
+		if (version < 1 || version > FORMAT_VERSION)
+			throw new IOException("Unsupported text pipeline version");
+		Builder b = new Builder();
+		if (version >= 2)
+			b.decodeEntities(in.readBoolean()).normalizeUnicode(in.readBoolean()).stripAccents(in.readBoolean());
+		b.lowercase(in.readBoolean()).noiseTokens(in.readBoolean()).entities(in.readBoolean());
+		if (version >= 3)
+		{
+			int kind = in.readInt();
+			if (kind < 0 || kind >= Stemming.values().length)
+				throw new IOException("Corrupt text pipeline: stemmer " + kind);
+			b.stemmer(Stemming.values()[kind]);
+		}
+		else
+			b.stem(in.readBoolean());
+		b.stopwords(readWords(in)).domainWords(readWords(in));
+		b.punctuation(in.readUTF()).separators(in.readUTF());
+		try
+		{
+			return b.build();
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Corrupt text pipeline: " + e.getMessage());
+		}
+	}
+
+	private static void writeWords(DataOutputStream out, String[] words) throws IOException
+	{
+		out.writeInt(words.length);
+		for (String w: words)
+			out.writeUTF(w);
+	}
+
+	private static String[] readWords(DataInputStream in) throws IOException
+	{
+		int n = in.readInt();
+		if (n < 0)
+			throw new IOException("Corrupt text pipeline");
+		String[] words = new String[n];
+		for (int i = 0; i < n; i++)
+			words[i] = in.readUTF();
+		return words;
+	}
+
+	//a short hash of every stage's settings, e.g. to name caches of text cleaned by this pipeline
+	public String signature()
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try
+		{
+			writeTo(new DataOutputStream(bytes));
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		long h = 0xcbf29ce484222325L;   //64-bit FNV-1a
+		for (byte b: bytes.toByteArray())
+		{
+			h ^= b & 0xff;
+			h *= 0x100000001b3L;
+		}
+		return String.format("%016x", h);
+	}
+
+/********************************************************************************************
+ * Builder: every stage is off until it is set
+ * ******************************************************************************************/
+	public static final class Builder {
+		private boolean decodeEntities = false;
+		private boolean normalize = false;
+		private boolean stripAccents = false;
+		private boolean lowercase = false;
+		private String[] stopwords = new String[0];
+		private String[] domainWords = new String[0];
+		private boolean noise = false;
+		private boolean entities = false;
+		private String punctuation = "";
+		private String separators = "";
+		private Stemming stemming = Stemming.NONE;
+
+		//replace HTML character references by their chars before any other stage
+		public Builder decodeEntities(boolean decode)
+		{
+			decodeEntities = decode;
+			return this;
+		}
+
+		//put non-ASCII text in Unicode NFKC form
+		public Builder normalizeUnicode(boolean normalize)
+		{
+			this.normalize = normalize;
+			return this;
+		}
+
+		//remove accents from letters (e.g. "resume" for "r\u00e9sum\u00e9") and spell out ligatures and
+		//letters such as "\u00df" as plain ASCII letters
+		public Builder stripAccents(boolean strip)
+		{
+			stripAccents = strip;
+			return this;
+		}
+
+		//fold the case of every char, independently of the default locale
+		public Builder lowercase(boolean lowercase)
+		{
+			this.lowercase = lowercase;
+			return this;
+		}
+
+		//words deleted from the text (after lower-casing, if that stage is on), e.g. StopWords.words()
+		public Builder stopwords(String... words)
+		{
+			stopwords = words.clone();
+			return this;
+		}
+
+		//words of a domain deleted like stopwords (e.g. "reuter", "mln" in newswire text)
+		public Builder domainWords(String... words)
+		{
+			domainWords = words.clone();
+			return this;
+		}
+
+		//delete tokens with digits, '_' or '@' in them (the word part of e.g. "x5", "a_b", "a@b.com")
+		public Builder noiseTokens(boolean noise)
+		{
+			this.noise = noise;
+			return this;
+		}
+
+		//delete "&lt;" and numeric HTML entities
+		public Builder entities(boolean entities)
+		{
+			this.entities = entities;
+			return this;
+		}
+
+		//chars deleted from tokens
+		public Builder punctuation(String chars)
+		{
+			punctuation = chars;
+			return this;
+		}
+
+		//chars splitting a token into separate tokens
+		public Builder separators(String chars)
+		{
+			separators = chars;
+			return this;
+		}
+
+		//reduce every token to its Porter stem (or not at all)
+		public Builder stem(boolean stem)
+		{
+			stemming = stem ? Stemming.PORTER : Stemming.NONE;
+			return this;
+		}
+
+		//reduce every token to its stem by the given stemmer
+		public Builder stemmer(Stemming kind)
+		{
+			if (kind == null)
+				throw new IllegalArgumentException("Stemming must not be null");
+			stemming = kind;
+			return this;
+		}
+
+		public TextPipeline build()
+		{
+			for (String w: stopwords)
+				checkWord(w);
+			for (String w: domainWords)
+				checkWord(w);
+			for (int i = 0; i < punctuation.length(); i++)
+				checkChar(punctuation.charAt(i), "punctuation");
+			for (int i = 0; i < separators.length(); i++)
+			{
+				checkChar(separators.charAt(i), "separator");
+				if (punctuation.indexOf(separators.charAt(i)) >= 0)
+					throw new IllegalArgumentException("'" + separators.charAt(i) + "' is both punctuation and a separator");
+			}
+			return new TextPipeline(this);
+		}
+
+		//a listed word must be a whole word, or it could never be found
+		private static void checkWord(String w)
+		{
+			if (w == null || w.isEmpty())
+				throw new IllegalArgumentException("Empty word in word list");
+			for (int i = 0; i < w.length(); i++)
+			{
+				if (!isWordChar(w.charAt(i)))
+					throw new IllegalArgumentException("Not a single word: \"" + w + "\"");
+			}
+		}
+
+		private static void checkChar(char c, String what)
+		{
+			if (Tokenizer.isSpace(c))
+				throw new IllegalArgumentException("'" + c + "' cannot be a " + what + " char");
+		}
+	}
+
+	//usage: java TextPipeline trainFile testFile [features]
+	//checks that REUTERS gives the same stems as swRemove, the Tokenizer and the Stemmer on every
+	//document of a Reuters test file and on random ASCII snippets of the awkward cases, and that
+	//classifyFused gives the same category as classify, then compares the cleaning time of both,
+	//and of REUTERS with entity decoding, normalization and accent stripping added
+	public static void main(String[] args) throws IOException
+	{
+		final List<String> texts = new ArrayList<String>();
+		CorpusReader.readReuters(args[1], new DocumentHandler() {
+			public void document(String[] cats, String text) {
+				texts.add(text);
+			}
+		});
+		int features = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+		NaiveBayesLearner m = new NaiveBayesLearner(args[0], 'R', 'C', features);
+
+		int tokenDiffs = 0, guessDiffs = 0;
+		for (String text: texts)
+		{
+			if (!regexStems(text).equals(pipelineStems(REUTERS, text)))
+				tokenDiffs++;
+			if (!m.classify(text).equals(m.classifyFused(text)))
+				guessDiffs++;
+		}
+		System.out.println("Documents: " + texts.size() + ", token differences: " + tokenDiffs + ", category differences: " + guessDiffs);
+
+		String[] parts = { "the", "The", "a", "mln", "dlrs", "Reuter", "reuters", "oil", "Crude", "x5", "5", "_",
+				"@", "a@b", "&lt;", "&lt", "&#39;", "&#;", "pe1", "-", "&", ";", ".", ",", "'", "\"", "(", ")", " ",
+				"  ", "\n", "\t", "don't", "u.s.", "1.5", "e-mail", "foo.the", "#", "~", "[", "|", "*", "<", "/",
+				"!", ":", "{", "+", "%", "I", "AND", "Ab1", "9@x", "x@" };
+		Random rnd = new Random(1);
+		int snippetDiffs = 0;
+		for (int i = 0; i < 100000; i++)
+		{
+			StringBuilder sb = new StringBuilder();
+			for (int k = 1 + rnd.nextInt(12); k > 0; k--)
+				sb.append(parts[rnd.nextInt(parts.length)]);
+			String t = sb.toString();
+			if (!regexStems(t).equals(pipelineStems(REUTERS, t)))
+			{
+				if (snippetDiffs++ < 10)
+					System.out.println("Differs: [" + t + "] " + regexStems(t) + " / " + pipelineStems(REUTERS, t));
+			}
+		}
+		System.out.println("Random snippets: 100000, token differences: " + snippetDiffs);
+
+		final int[] sink = new int[1];
+		TokenHandler count = new TokenHandler() {
+			public void token(char[] buf, int off, int len) { sink[0] += len; }
+		};
+		Tokenizer tokenizer = new Tokenizer();
+		final Stemmer stemmer = new Stemmer();
+		TokenHandler stemAndCount = new TokenHandler() {
+			public void token(char[] buf, int off, int len) {
+				stemmer.add(buf, off, len);
+				stemmer.stem();
+				sink[0] += stemmer.getResultLength();
+			}
+		};
+		TextPipeline unicode = REUTERS.toBuilder().decodeEntities(true).normalizeUnicode(true).stripAccents(true).build();
+		for (int round = 0; round < 5; round++)
+		{
+			long t0 = System.nanoTime();
+			for (String text: texts)
+				tokenizer.tokenize(StringStemmer.swRemove(text), stemAndCount);
+			long t1 = System.nanoTime();
+			for (String text: texts)
+				REUTERS.tokenize(text, count);
+			long t2 = System.nanoTime();
+			for (String text: texts)
+				unicode.tokenize(text, count);
+			long t3 = System.nanoTime();
+			System.out.printf("swRemove + Tokenizer + Stemmer %.1fus/doc   REUTERS pipeline %.1fus/doc   with normalization %.1fus/doc%n",
+					(t1 - t0)/1e3/texts.size(), (t2 - t1)/1e3/texts.size(), (t3 - t2)/1e3/texts.size());
+		}
+	}
+
+	private static String regexStems(String text) throws IOException
+	{
+		final StringBuilder sb = new StringBuilder();
+		final Stemmer stemmer = new Stemmer();
+		new Tokenizer().tokenize(StringStemmer.swRemove(text), new TokenHandler() {
+			public void token(char[] buf, int off, int len) {
+				stemmer.add(buf, off, len);
+				stemmer.stem();
+				sb.append(stemmer.getResultBuffer(), 0, stemmer.getResultLength()).append(' ');
+			}
+		});
+		return sb.toString();
+	}
+
+	private static String pipelineStems(TextPipeline p, String text)
+	{
+		final StringBuilder sb = new StringBuilder();
+		p.tokenize(text, new TokenHandler() {
+			public void token(char[] buf, int off, int len) { sb.append(buf, off, len).append(' '); }
+		});
+		return sb.toString();
+	}
+}
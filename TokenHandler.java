@@ -0,0 +1,15 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: none
+ * 
+ * DESCRIPTION: Callback which receives the tokens found by a Tokenizer as spans over a shared
+ * character buffer. The span is only valid for the duration of the call: implementations that
+ * need to keep a token must copy it (e.g. into a TermDictionary).
+ **********************************************************************************************/
+
+public interface TokenHandler {
+	//called once per token, in document order, with the token in buf[off, off+len)
+	void token(char[] buf, int off, int len);
+}
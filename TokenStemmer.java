@@ -0,0 +1,23 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: none
+ *
+ * DESCRIPTION: A stemmer that reduces one token at a time in its own reusable buffer: the
+ * chars of a token are added, stem() reduces them and starts a new token, and the stem is
+ * read from getResultBuffer()[0, getResultLength()) until the next call to stem(). Implemented
+ * by Stemmer (Porter) and Porter2Stemmer (Snowball English); a TextPipeline picks one.
+ * Instances are not thread-safe.
+ **********************************************************************************************/
+
+public interface TokenStemmer {
+	//adds the len chars of w starting at off to the token being stemmed
+	void add(char[] w, int off, int len);
+
+	//stems the token added so far; the next add starts a new token
+	void stem();
+
+	char[] getResultBuffer();
+	int getResultLength();
+}
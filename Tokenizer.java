@@ -0,0 +1,53 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: TokenHandler.java
+ * 
+ * DESCRIPTION: Splits cleaned text into whitespace-separated tokens and hands each one to a
+ * TokenHandler as an (offset, length) span over one reusable character buffer. This replaces
+ * text.split("\\s"), which compiles a regex and allocates an array plus a String per token. 
+ * Empty tokens (from leading or repeated whitespace) are skipped.
+ * A Tokenizer instance reuses its buffer and is therefore not thread-safe.
+ **********************************************************************************************/
+
+public class Tokenizer {
+	private char[] buf;
+	
+	public Tokenizer()
+	{
+		buf = new char[256];
+	}
+	
+	//copies the text into the shared buffer once and reports every token span in it
+	public void tokenize(String text, TokenHandler handler)
+	{
+		int n = text.length();
+		if (n > buf.length)
+			buf = new char[Math.max(n, 2*buf.length)];
+		text.getChars(0, n, buf, 0);
+		tokenize(buf, 0, n, handler);
+	}
+	
+	//reports every token span within buf[off, off+len)
+	public static void tokenize(char[] buf, int off, int len, TokenHandler handler)
+	{
+		int end = off + len;
+		int i = off;
+		while (i < end)
+		{
+			//skip whitespace, then extend the token until the next whitespace character
+			while (i < end && isSpace(buf[i])) i++;
+			int start = i;
+			while (i < end && !isSpace(buf[i])) i++;
+			if (i > start)
+				handler.token(buf, start, i - start);
+		}
+	}
+	
+	//same character class as the regex \s
+	public static boolean isSpace(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+}
@@ -0,0 +1,64 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ *
+ * DEPENDENCIES: ScoringKernel.java, the jdk.incubator.vector module
+ *
+ * DESCRIPTION: ScoringKernel's accumulate written with the Vector API: the categories of four
+ * rows are combined SPECIES_PREFERRED.length() at a time in explicit SIMD registers, rather
+ * than relying on the JIT to vectorize the scalar loop. Products and sums are taken in the
+ * same order as the scalar loop (no fused multiply-add), so the scores are bit for bit the
+ * same as the scalar kernel's. The module is an incubator module, so this class compiles and
+ * runs only with --add-modules jdk.incubator.vector; ScoringKernel loads it reflectively and
+ * keeps the scalar loop when the module is absent.
+ **********************************************************************************************/
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorKernel implements ScoringKernel.Accumulator {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	//score[c] += sum over i < n of x[i] * w[rows[i]*numCats + c], for every category c
+	public void accumulate(double[] w, int numCats, int[] rows, double[] x, int n, double[] score)
+	{
+		int step = SPECIES.length();
+		//rows narrower than two vectors are mostly tail, which the scalar loop handles as well
+		if (numCats < 2*step)
+		{
+			ScoringKernel.accumulate(w, numCats, rows, x, n, score);
+			return;
+		}
+		int bound = SPECIES.loopBound(numCats);
+		int i = 0;
+		for (; i + 3 < n; i += 4)
+		{
+			int b0 = rows[i]*numCats, b1 = rows[i + 1]*numCats, b2 = rows[i + 2]*numCats, b3 = rows[i + 3]*numCats;
+			double x0 = x[i], x1 = x[i + 1], x2 = x[i + 2], x3 = x[i + 3];
+			DoubleVector v0 = DoubleVector.broadcast(SPECIES, x0), v1 = DoubleVector.broadcast(SPECIES, x1);
+			DoubleVector v2 = DoubleVector.broadcast(SPECIES, x2), v3 = DoubleVector.broadcast(SPECIES, x3);
+			int c = 0;
+			for (; c < bound; c += step)
+			{
+				DoubleVector sum = v0.mul(DoubleVector.fromArray(SPECIES, w, b0 + c))
+						.add(v1.mul(DoubleVector.fromArray(SPECIES, w, b1 + c)))
+						.add(v2.mul(DoubleVector.fromArray(SPECIES, w, b2 + c)))
+						.add(v3.mul(DoubleVector.fromArray(SPECIES, w, b3 + c)));
+				DoubleVector.fromArray(SPECIES, score, c).add(sum).intoArray(score, c);
+			}
+			for (; c < numCats; c++)
+				score[c] += x0*w[b0 + c] + x1*w[b1 + c] + x2*w[b2 + c] + x3*w[b3 + c];
+		}
+		for (; i < n; i++)
+		{
+			int b = rows[i]*numCats;
+			double xi = x[i];
+			DoubleVector vi = DoubleVector.broadcast(SPECIES, xi);
+			int c = 0;
+			for (; c < bound; c += step)
+				DoubleVector.fromArray(SPECIES, score, c).add(vi.mul(DoubleVector.fromArray(SPECIES, w, b + c))).intoArray(score, c);
+			for (; c < numCats; c++)
+				score[c] += xi*w[b + c];
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: none
+ * 
+ * DESCRIPTION: A flat table of doubles holding a model's scoring weights, laid out row-major
+ * (weight of row t and category c at t*numCats + c), as seen by classification: it is only
+ * read, so it can be shared by any number of classifying threads. Tables a learner fills
+ * implement WritableWeights (HeapWeights on the Java heap, OffHeapWeights in native memory);
+ * QuantizedWeights is built whole from another table and has no set. All accessors are 
+ * bounds-checked.
+ **********************************************************************************************/
+
+public interface WeightStore {
+	//# of doubles in the table
+	int size();
+	
+	double get(int i);
+	
+	//score[c] += sum over i < n of x[i] * weight(rows[i], c), for every category c < numCats
+	void accumulate(int numCats, int[] rows, double[] x, int n, double[] score);
+}
@@ -0,0 +1,15 @@
+package classifier;
+/**********************************************************************************************
+ * AUTHOR: Advait Chauhan
+ * 
+ * DEPENDENCIES: WeightStore.java
+ * 
+ * DESCRIPTION: A weight table that can be filled: the WeightStore a learner computes its
+ * smoothed weights into. Implemented on the Java heap (HeapWeights) or in native memory 
+ * outside the heap (OffHeapWeights). A table is filled once with set before it is shared
+ * with classifying threads, and is only read afterwards.
+ **********************************************************************************************/
+
+public interface WritableWeights extends WeightStore {
+	void set(int i, double v);
+}